@@ -0,0 +1,88 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Registers the same number of users one by one and through the batch path.
+ * Scores are per user so the two modes can be compared directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchRegistrationBenchmark {
+
+  private static final int USERS = 1000;
+
+  @Param({"500"})
+  private int batchSize;
+
+  private ConfigurableApplicationContext context;
+
+  private IUserService userService;
+
+  private long sequence;
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = BenchmarkSupport.startApplication("user-registration.batch.size=" + batchSize);
+    userService = context.getBean(IUserService.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  private List<User> nextUsers() {
+    List<User> users = new ArrayList<>(USERS);
+    for (int i = 0; i < USERS; i++) {
+      users.add(BenchmarkSupport.user("user" + sequence++));
+    }
+    return users;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(USERS)
+  public int oneByOne() throws Exception {
+    int created = 0;
+    for (User user : nextUsers()) {
+      userService.createUser(user);
+      created++;
+    }
+    return created;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(USERS)
+  public int batched() {
+    List<User> users = nextUsers();
+    int created = 0;
+    for (int from = 0; from < users.size(); from += batchSize) {
+      created += userService.createUsers(users.subList(from, Math.min(from + batchSize, users.size())))
+          .size();
+    }
+    return created;
+  }
+}
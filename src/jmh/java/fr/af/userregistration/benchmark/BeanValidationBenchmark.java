@@ -0,0 +1,72 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.dto.UserDTO;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import org.hibernate.validator.HibernateValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full Hibernate Validator run over a UserDTO, as done by @Valid on registration, checking every
+ * constraint or stopping at the first violation (user-registration.validation.fail-fast).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeanValidationBenchmark {
+
+  @Param({"false", "true"})
+  private boolean failFast;
+
+  private ValidatorFactory validatorFactory;
+
+  private Validator validator;
+
+  private final UserDTO valid = BenchmarkSupport.userDTO("jeanne.martin");
+
+  private final UserDTO invalid = BenchmarkSupport.userDTO(" ");
+
+  @Setup
+  public void createValidator() {
+    validatorFactory = Validation.byProvider(HibernateValidator.class)
+        .configure()
+        .failFast(failFast)
+        .buildValidatorFactory();
+    validator = validatorFactory.getValidator();
+    invalid.setResidenceCountry("GB");
+    invalid.setPhoneNumber("12");
+  }
+
+  @TearDown
+  public void closeValidator() {
+    validatorFactory.close();
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<UserDTO>> validUser() {
+    return validator.validate(valid);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<UserDTO>> invalidUser() {
+    return validator.validate(invalid);
+  }
+}
@@ -0,0 +1,67 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.AfUserRegistrationApplication;
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.stream.Stream;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+public final class BenchmarkSupport {
+
+  private static final Date ADULT_BIRTH_DATE = Date.from(
+      LocalDate.now().minusYears(30).atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+  private BenchmarkSupport() {
+  }
+
+  /**
+   * Starts the application without web server, on a private in-memory database.
+   * Service logging is turned down so that it doesn't dominate the measures.
+   * The properties are passed as command line arguments, to override application.properties.
+   */
+  static ConfigurableApplicationContext startApplication(String... properties) {
+    String[] defaults = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark-" + System.nanoTime(),
+        "logging.level.fr.af.userregistration=WARN"
+    };
+    return new SpringApplicationBuilder(AfUserRegistrationApplication.class)
+        .web(WebApplicationType.NONE)
+        .run(Stream.concat(Arrays.stream(defaults), Arrays.stream(properties))
+            .map(property -> "--" + property)
+            .toArray(String[]::new));
+  }
+
+  public static UserDTO userDTO(String userName) {
+    UserDTO user = new UserDTO();
+    user.setUserName(userName);
+    user.setFirstName("Jeanne");
+    user.setLastName("Martin");
+    user.setResidenceCountry("FR");
+    user.setBirthDate(ADULT_BIRTH_DATE);
+    user.setPhoneNumber("0612345678");
+    user.setGender(Gender.F);
+    return user;
+  }
+
+  public static User user(String userName) {
+    User user = new User();
+    user.setUserName(userName);
+    user.setFirstName("Jeanne");
+    user.setLastName("Martin");
+    user.setResidenceCountry("FR");
+    user.setBirthDate(ADULT_BIRTH_DATE);
+    user.setPhoneNumber("0612345678");
+    user.setGender(Gender.F);
+    return user;
+  }
+}
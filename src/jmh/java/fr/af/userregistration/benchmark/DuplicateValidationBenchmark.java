@@ -0,0 +1,65 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.util.ObjectMapper;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validation work of one registration: the @Valid DTO check followed either by the
+ * pre-insert entity check (previous behaviour) or by the validated marker check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DuplicateValidationBenchmark {
+
+  private ValidatorFactory validatorFactory;
+
+  private Validator validator;
+
+  private final UserDTO userDTO = BenchmarkSupport.userDTO("jeanne.martin");
+
+  @Setup
+  public void createValidator() {
+    validatorFactory = Validation.buildDefaultValidatorFactory();
+    validator = validatorFactory.getValidator();
+  }
+
+  @TearDown
+  public void closeValidator() {
+    validatorFactory.close();
+  }
+
+  @Benchmark
+  public int dtoAndEntity() {
+    int violations = validator.validate(userDTO).size();
+    User user = ObjectMapper.map(userDTO, User.class);
+    return violations + validator.validate(user).size();
+  }
+
+  @Benchmark
+  public int dtoOnly() {
+    int violations = validator.validate(userDTO).size();
+    User user = ObjectMapper.map(userDTO, User.class);
+    user.markValidated();
+    return user.isValidated() ? violations : violations + validator.validate(user).size();
+  }
+}
@@ -0,0 +1,55 @@
+package fr.af.userregistration.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.af.userregistration.dto.UserDTO;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON serialization of a UserDTO, as done for request and response bodies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JacksonBenchmark {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final ObjectWriter writer = objectMapper.writerFor(UserDTO.class);
+
+  private final ObjectReader reader = objectMapper.readerFor(UserDTO.class);
+
+  private final UserDTO user = BenchmarkSupport.userDTO("jeanne.martin");
+
+  private byte[] json;
+
+  @Setup
+  public void serialize() throws JsonProcessingException {
+    json = writer.writeValueAsBytes(user);
+  }
+
+  @Benchmark
+  public byte[] write() throws JsonProcessingException {
+    return writer.writeValueAsBytes(user);
+  }
+
+  @Benchmark
+  public UserDTO read() throws Exception {
+    return reader.readValue(json);
+  }
+}
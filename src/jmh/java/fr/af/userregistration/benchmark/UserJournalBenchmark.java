@@ -0,0 +1,96 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Registration throughput of the persistence engines, from concurrent threads:
+ * <ul>
+ *   <li>h2Memory: UserServiceImpl over the in-memory H2 database, nothing reaches the disk</li>
+ *   <li>h2File: UserServiceImpl over an H2 database file</li>
+ *   <li>journal: JournalUserServiceImpl, each group of registrations forced to the disk</li>
+ *   <li>journalNoFsync: JournalUserServiceImpl, written to the operating system only</li>
+ * </ul>
+ * Run with -prof gc, and compare the "user.journal.commits" group sizes by thread count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class UserJournalBenchmark {
+
+  @Param({"h2Memory", "h2File", "journal", "journalNoFsync"})
+  private String engine;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private Path directory;
+
+  private ConfigurableApplicationContext context;
+
+  private IUserService userService;
+
+  @Setup(Level.Trial)
+  public void startApplication() throws IOException {
+    directory = Files.createTempDirectory("engine");
+    String journal = "user-registration.persistence.journal-directory=" + directory;
+    switch (engine) {
+      case "h2File":
+        context = BenchmarkSupport.startApplication(
+            "spring.datasource.url=jdbc:h2:file:" + directory.resolve("users"));
+        break;
+      case "journal":
+        context = BenchmarkSupport.startApplication(
+            "user-registration.persistence.engine=journal", journal);
+        break;
+      case "journalNoFsync":
+        context = BenchmarkSupport.startApplication(
+            "user-registration.persistence.engine=journal", journal,
+            "user-registration.persistence.fsync=false");
+        break;
+      default:
+        context = BenchmarkSupport.startApplication();
+    }
+    userService = context.getBean(IUserService.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() throws IOException {
+    context.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Benchmark
+  public User createUser() throws Exception {
+    return userService.createUser(BenchmarkSupport.user("created" + sequence.incrementAndGet()));
+  }
+}
@@ -0,0 +1,102 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Username lookup latency as the user table grows, through the normalized key index
+ * and through a case-insensitive scan of the username column, and latency of the LIKE prefix
+ * scan replaced by the search index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class UserLookupScalingBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  private int rows;
+
+  private ConfigurableApplicationContext context;
+
+  private UserRepository userRepository;
+
+  private EntityManagerFactory entityManagerFactory;
+
+  @Setup(Level.Trial)
+  public void fillTable() {
+    context = BenchmarkSupport.startApplication();
+    userRepository = context.getBean(UserRepository.class);
+    entityManagerFactory = context.getBean(EntityManagerFactory.class);
+    context.getBean(JdbcTemplate.class).update("insert into \"user\""
+        + " (id, user_name, user_name_key, first_name, last_name, residence_country, birth_date,"
+        + " gender) select x, 'User' || x, 'user' || x, 'Jeanne', 'Martin', 'FR',"
+        + " date '1990-01-01', 'F' from system_range(1, ?)", rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  private String randomUserName() {
+    return "USER" + (1 + ThreadLocalRandom.current().nextInt(rows));
+  }
+
+  @Benchmark
+  public User indexedKey() {
+    return userRepository.findUserByUserNameKey(User.normalizeUserName(randomUserName()))
+        .orElseThrow(IllegalStateException::new);
+  }
+
+  @Benchmark
+  public List<User> lowerScan() {
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      return entityManager
+          .createQuery("select u from User u where lower(u.userName) = :userName", User.class)
+          .setParameter("userName", User.normalizeUserName(randomUserName()))
+          .getResultList();
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  @Benchmark
+  public List<User> likePrefixScan() {
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      return entityManager
+          .createQuery("select u from User u where lower(u.userName) like :prefix"
+              + " or lower(u.firstName) like :prefix or lower(u.lastName) like :prefix"
+              + " order by u.id", User.class)
+          .setParameter("prefix", User.normalizeUserName(randomUserName()) + "%")
+          .setMaxResults(20)
+          .getResultList();
+    } finally {
+      entityManager.close();
+    }
+  }
+}
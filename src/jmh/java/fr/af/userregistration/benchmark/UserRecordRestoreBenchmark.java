@@ -0,0 +1,126 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.cache.UserRecordStore;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import fr.af.userregistration.repository.UserRepository;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Warm restart of {@link UserRecordStore}: time from an empty store to the first lookup of a
+ * restored user, from a snapshot of all the users followed by a change log of
+ * {@code logged} users. The database already holds the users, so none is copied back to it.
+ * Each restart works on links to the files of the snapshot, as a restart leaves a new
+ * snapshot and deletes the change logs.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+@State(Scope.Benchmark)
+public class UserRecordRestoreBenchmark {
+
+  @Param({"1000000", "10000000"})
+  private int users;
+
+  @Param({"0", "100000"})
+  private int logged;
+
+  private Path directory;
+
+  private Path restartDirectory;
+
+  private UserRegistrationProperties properties;
+
+  private UserRepository database;
+
+  private UserRecordStore restored;
+
+  @Setup(Level.Trial)
+  public void writeSnapshot() throws IOException {
+    directory = Files.createTempDirectory("restore");
+    properties = new UserRegistrationProperties();
+    properties.getRecordStore().setEnabled(true);
+    properties.getRecordStore().setInitialCapacity(users);
+    properties.getRecordStore().setSnapshotDirectory(directory.toString());
+    long maxId = users;
+    database = (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {UserRepository.class}, (proxy, method, args) ->
+            method.getReturnType() == Optional.class ? Optional.of(maxId)
+                : method.getReturnType() == List.class ? List.of() : null);
+    UserRecordStore store = new UserRecordStore(database, null, properties);
+    store.afterSingletonsInstantiated();
+    for (long id = 1; id <= users; id++) {
+      store.put(user(id));
+      if (id == users - logged) {
+        store.snapshot();
+      }
+    }
+    // the change log is kept, as after a crash
+  }
+
+  private static User user(long id) {
+    return new User(id, "User" + id, "Jeanne", "Martin" + id % 1000, "FR",
+        java.sql.Date.valueOf("1990-01-01"), "06" + (12_000_000 + id % 1_000_000), Gender.F);
+  }
+
+  @Setup(Level.Iteration)
+  public void linkSnapshot() throws IOException {
+    restartDirectory = Files.createTempDirectory("restart");
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.createLink(restartDirectory.resolve(file.getFileName()), file);
+      }
+    }
+    properties.getRecordStore().setSnapshotDirectory(restartDirectory.toString());
+  }
+
+  @TearDown(Level.Iteration)
+  public void stopStore() throws IOException {
+    restored.destroy();
+    delete(restartDirectory);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteSnapshot() throws IOException {
+    delete(directory);
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public Optional<User> restart() {
+    restored = new UserRecordStore(database, null, properties);
+    restored.afterSingletonsInstantiated();
+    return restored.get("user" + users / 2);
+  }
+}
@@ -0,0 +1,110 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.cache.UserCache;
+import fr.af.userregistration.cache.UserRecordStore;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every user kept in memory, as entities in {@link UserCache} or as records in
+ * {@link UserRecordStore}: username lookup latency, and duration of a full collection, which
+ * has to trace every object of the entity cache while the records are a few direct buffers.
+ * The heap and direct memory taken once the users are loaded are printed by the setup
+ * ("footprint: ..."). Run with -prof gc to compare the allocations of a lookup.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=2g"})
+@State(Scope.Benchmark)
+public class UserRecordStoreBenchmark {
+
+  private static final Function<String, Optional<User>> NOT_LOADED = userName -> {
+    throw new IllegalStateException(userName + " is not cached");
+  };
+
+  @Param({"entityCache", "recordStore"})
+  private String store;
+
+  @Param({"1000000", "5000000"})
+  private int users;
+
+  private UserCache userCache;
+
+  private UserRecordStore userRecordStore;
+
+  @Setup(Level.Trial)
+  public void loadUsers() {
+    long heapBefore = usedHeap();
+    UserRegistrationProperties properties = new UserRegistrationProperties();
+    properties.getCache().setMaximumSize(users);
+    properties.getCache().setTtl(Duration.ofDays(1));
+    properties.getRecordStore().setEnabled(true);
+    properties.getRecordStore().setInitialCapacity(users);
+    if ("entityCache".equals(store)) {
+      userCache = new UserCache(properties);
+    } else {
+      userRecordStore = new UserRecordStore(null, null, properties);
+    }
+    for (long id = 1; id <= users; id++) {
+      User user = new User(id, "User" + id, "Jeanne", "Martin" + id % 1000, "FR",
+          java.sql.Date.valueOf("1990-01-01"), "06" + (12_000_000 + id % 1_000_000), Gender.F);
+      if (userCache != null) {
+        userCache.get(user.getUserName(), userName -> Optional.of(user));
+      } else {
+        userRecordStore.put(user);
+      }
+    }
+    System.out.printf("%nfootprint: %s, %d users, heap %d MB, direct %d MB%n", store, users,
+        (usedHeap() - heapBefore) >> 20, bufferMemory() >> 20);
+  }
+
+  private static long usedHeap() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long bufferMemory() {
+    return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+        .mapToLong(BufferPoolMXBean::getMemoryUsed)
+        .sum();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @Warmup(iterations = 2, time = 2)
+  @Measurement(iterations = 3, time = 2)
+  public Optional<User> lookup() {
+    String userName = "user" + (1 + ThreadLocalRandom.current().nextInt(users));
+    return userCache != null ? userCache.get(userName, NOT_LOADED)
+        : userRecordStore.get(userName);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public void fullGc() {
+    System.gc();
+  }
+}
@@ -0,0 +1,106 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.cache.UserSearchIndex;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search latency of {@link UserSearchIndex} with 1M and 10M users, for a selective query
+ * (the beginning of a username), a common one (the beginning of a last name shared by
+ * thousands of users), a full name, and a page far from the first one.
+ * Names are drawn from 100 first names and 1000 last names.
+ * The LIKE scan it replaces is measured by {@link UserLookupScalingBenchmark#likePrefixScan()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class UserSearchBenchmark {
+
+  private static final int FIRST_NAMES = 100;
+
+  private static final int LAST_NAMES = 1000;
+
+  private static final int PAGE = 20;
+
+  @Param({"1000000", "10000000"})
+  private int users;
+
+  private UserSearchIndex index;
+
+  @Setup(Level.Trial)
+  public void loadIndex() {
+    index = new UserSearchIndex(null, new UserRegistrationProperties());
+    index.load(() -> new Iterator<User>() {
+
+      private long id;
+
+      @Override
+      public boolean hasNext() {
+        return id < users;
+      }
+
+      @Override
+      public User next() {
+        id++;
+        return new User(id, userName(id), firstName(id), lastName(id), "FR", null, null, null);
+      }
+    });
+  }
+
+  private static String firstName(long id) {
+    return "Prénom" + (id % FIRST_NAMES);
+  }
+
+  private static String lastName(long id) {
+    return "Nom" + (id / FIRST_NAMES % LAST_NAMES);
+  }
+
+  private static String userName(long id) {
+    return "user" + id;
+  }
+
+  private long randomId() {
+    return 1 + ThreadLocalRandom.current().nextInt(users);
+  }
+
+  @Benchmark
+  public List<Long> userNamePrefix() {
+    String userName = userName(randomId());
+    return index.search(userName.substring(0, userName.length() - 1), 0, PAGE);
+  }
+
+  @Benchmark
+  public List<Long> commonPrefix() {
+    return index.search("nom" + ThreadLocalRandom.current().nextInt(LAST_NAMES / 10), 0, PAGE);
+  }
+
+  @Benchmark
+  public List<Long> fullName() {
+    long id = randomId();
+    return index.search(firstName(id) + " " + lastName(id), 0, PAGE);
+  }
+
+  @Benchmark
+  public List<Long> farPage() {
+    return index.search("prenom1", 50 * PAGE, PAGE);
+  }
+}
@@ -0,0 +1,105 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * UserServiceImpl through its Spring proxy, over the in-memory H2 database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+  private static final int EXISTING_USERS = 10_000;
+
+  private ConfigurableApplicationContext context;
+
+  private IUserService userService;
+
+  private long sequence;
+
+  @Setup(Level.Trial)
+  public void startApplication() throws Exception {
+    context = BenchmarkSupport.startApplication();
+    userService = context.getBean(IUserService.class);
+    for (int i = 0; i < EXISTING_USERS; i++) {
+      userService.createUser(BenchmarkSupport.user("existing" + i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  @Benchmark
+  public User createUser() throws Exception {
+    return userService.createUser(BenchmarkSupport.user("created" + sequence++));
+  }
+
+  @Benchmark
+  public User getUserByUserName_hot() {
+    return userService.getUserByUserName("existing42");
+  }
+
+  @Benchmark
+  public User getUserByUserName_existing() {
+    return userService.getUserByUserName("existing" + (sequence++ % EXISTING_USERS));
+  }
+
+  @Benchmark
+  public Object getUserByUserName_notFound() {
+    try {
+      return userService.getUserByUserName("unknown" + sequence++);
+    } catch (ResourceNotFoundException e) {
+      return e;
+    }
+  }
+
+  /**
+   * Same unknown username each time, answered by the cache: only the cost of the miss remains.
+   */
+  @Benchmark
+  public Object getUserByUserName_notFoundHot() {
+    try {
+      return userService.getUserByUserName("unknown42");
+    } catch (ResourceNotFoundException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Optional<User> findUserByUserName_notFoundHot() {
+    return userService.findUserByUserName("unknown42");
+  }
+
+  @Benchmark
+  public boolean isUserNameAvailable_free() {
+    return userService.isUserNameAvailable("unknown" + sequence++);
+  }
+
+  @Benchmark
+  public boolean isUserNameAvailable_taken() {
+    return userService.isUserNameAvailable("existing" + (sequence++ % EXISTING_USERS));
+  }
+}
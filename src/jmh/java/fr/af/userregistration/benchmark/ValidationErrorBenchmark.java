@@ -0,0 +1,53 @@
+package fr.af.userregistration.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.af.userregistration.cache.ValidationErrorCache;
+import fr.af.userregistration.constants.ValidationMessages;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+
+/**
+ * Body of the 400 answer to a request rejected for a single violation: a map of the errors
+ * serialized by Jackson, as before, or the bytes cached by {@link ValidationErrorCache}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationErrorBenchmark {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final ValidationErrorCache validationErrorCache = new ValidationErrorCache(objectMapper);
+
+  private final List<ObjectError> errors = List.of(
+      new FieldError("userDTO", "phoneNumber", ValidationMessages.INVALID_PHONE_NUMBER));
+
+  @Benchmark
+  public byte[] serializedMap() throws Exception {
+    Map<String, String> body = new HashMap<>();
+    errors.forEach(error ->
+        body.put(((FieldError) error).getField(), error.getDefaultMessage()));
+    return objectMapper.writeValueAsBytes(body);
+  }
+
+  @Benchmark
+  public byte[] cachedBody() {
+    return validationErrorCache.body(errors);
+  }
+}
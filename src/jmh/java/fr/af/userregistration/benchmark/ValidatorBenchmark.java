@@ -0,0 +1,84 @@
+package fr.af.userregistration.benchmark;
+
+import fr.af.userregistration.validator.AgeValidator;
+import fr.af.userregistration.validator.CountryValidator;
+import fr.af.userregistration.validator.PhoneValidator;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * isValid of the custom constraint validators, called directly.
+ * The phone number is also matched against the regular expression of the former @Pattern
+ * constraint, the way its validator does: a new Matcher for each value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+
+  private final AgeValidator ageValidator = new AgeValidator();
+
+  private final CountryValidator countryValidator = new CountryValidator();
+
+  private final Date birthDate = BenchmarkSupport.userDTO("jeanne.martin").getBirthDate();
+
+  private String country = "fr";
+
+  private String unknownCountry = "ZZ";
+
+  private final PhoneValidator phoneValidator = new PhoneValidator();
+
+  private final Pattern phonePattern = Pattern.compile("0[1-9]\\d{8}");
+
+  private String phone = "0612345678";
+
+  private String invalidPhone = "06123456789";
+
+  @Benchmark
+  public boolean age() {
+    return ageValidator.isValid(birthDate, null);
+  }
+
+  @Benchmark
+  public boolean country() {
+    return countryValidator.isValid(country, null);
+  }
+
+  @Benchmark
+  public boolean country_unknown() {
+    return countryValidator.isValid(unknownCountry, null);
+  }
+
+  @Benchmark
+  public boolean phone() {
+    return phoneValidator.isValid(phone, null);
+  }
+
+  @Benchmark
+  public boolean phone_invalid() {
+    return phoneValidator.isValid(invalidPhone, null);
+  }
+
+  @Benchmark
+  public boolean phone_regex() {
+    return phonePattern.matcher(phone).matches();
+  }
+
+  @Benchmark
+  public boolean phone_regex_invalid() {
+    return phonePattern.matcher(invalidPhone).matches();
+  }
+}
@@ -0,0 +1,276 @@
+package fr.af.userregistration.benchmark.load;
+
+import fr.af.userregistration.AfUserRegistrationApplication;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.af.userregistration.benchmark.BenchmarkSupport;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Closed-loop HTTP load test of the user API.
+ * Starts the application with the given properties, registers load.users users, then for each
+ * concurrency level of load.concurrency runs that many clients sending requests back to back
+ * for load.duration-seconds: username lookups, and registrations for load.write-ratio of them.
+ * One CSV line is printed per level.
+ * Halfway through each level, the live heap (after a full GC) and the number of threads are
+ * compared to the idle application, giving the threads and the memory added under load.
+ * Client threads are excluded from the count, their HTTP buffers are not.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Dexec.executable=java \
+ *   -Dexec.classpathScope=test -Dexec.args="-cp %classpath \
+ *   fr.af.userregistration.benchmark.load.LoadHarness load.db-latency-ms=20 \
+ *   load.concurrency=50,200,400 server.tomcat.threads.max=50 \
+ *   spring.datasource.hikari.maximum-pool-size=200 user-registration.execution.mode=virtual"
+ * </pre>
+ *
+ * spring.profiles.active=reactive runs the same load against the WebFlux / R2DBC variant.
+ * load.write-path=/async user-registration.write-behind.enabled=true sends the registrations
+ * to the write-behind queue.
+ *
+ * Arguments starting with "load." configure the harness, the other ones are application
+ * properties. The username cache is disabled unless overridden, so that lookups reach the
+ * database.
+ */
+public class LoadHarness {
+
+  static final String HEADER = "configuration,concurrency,requests,errors,throughput_rps,"
+      + "p50_ms,p95_ms,p99_ms,max_ms,extra_threads,extra_heap_kb_per_connection";
+
+  private static final String LOAD = "load.";
+
+  private final Map<String, String> settings = new LinkedHashMap<>();
+
+  private final Map<String, String> properties = new LinkedHashMap<>();
+
+  private final AtomicLong registrations = new AtomicLong();
+
+  private final HttpClient client = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(10))
+      .build();
+
+  public LoadHarness(String... args) {
+    properties.put("spring.datasource.url", "jdbc:h2:mem:load-" + System.nanoTime());
+    properties.put("logging.level.root", "WARN");
+    properties.put("user-registration.cache.maximum-size", "0");
+    for (String arg : args) {
+      String[] keyValue = arg.split("=", 2);
+      (keyValue[0].startsWith(LOAD) ? settings : properties).put(keyValue[0], keyValue[1]);
+    }
+    properties.put("server.port", "0");
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.out.println(HEADER);
+    new LoadHarness(args).run().forEach(System.out::println);
+  }
+
+  private String setting(String name, String defaultValue) {
+    return settings.getOrDefault(LOAD + name, defaultValue);
+  }
+
+  /**
+   * Runs every concurrency level against one application.
+   * @return one CSV line per concurrency level
+   */
+  public List<String> run() throws Exception {
+    int users = Integer.parseInt(setting("users", "1000"));
+    long latency = Long.parseLong(setting("db-latency-ms", "0"));
+    List<String> lines = new ArrayList<>();
+    try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+        AfUserRegistrationApplication.class)
+        .initializers(ctx -> ctx.getBeanFactory()
+            .addBeanPostProcessor(new SlowDatabasePostProcessor(latency)))
+        .run(properties.entrySet().stream()
+            .map(property -> "--" + property.getKey() + "=" + property.getValue())
+            .toArray(String[]::new))) {
+      IUserService userService = context.getBean(IUserService.class);
+      List<User> batch = new ArrayList<>();
+      for (int i = 0; i < users; i++) {
+        batch.add(BenchmarkSupport.user("load" + i));
+        if (batch.size() == 500 || i == users - 1) {
+          userService.createUsers(batch);
+          batch.clear();
+        }
+      }
+      ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      String configuration = describe();
+      Footprint idle = Footprint.measure();
+      for (String concurrency : setting("concurrency", "1,50,200").split(",")) {
+        Result result = load(port, objectMapper, users, Integer.parseInt(concurrency.trim()),
+            idle);
+        lines.add(configuration + "," + concurrency.trim() + "," + result);
+      }
+    }
+    return lines;
+  }
+
+  private String describe() {
+    StringBuilder configuration = new StringBuilder();
+    settings.forEach((key, value) -> {
+      if (!key.equals(LOAD + "concurrency")) {
+        configuration.append(key).append('=').append(value).append(' ');
+      }
+    });
+    properties.forEach((key, value) -> {
+      if (!key.equals("spring.datasource.url") && !key.startsWith("logging.")
+          && !key.equals("server.port")) {
+        configuration.append(key).append('=').append(value).append(' ');
+      }
+    });
+    return '"' + configuration.toString().trim() + '"';
+  }
+
+  private Result load(int port, ObjectMapper objectMapper, int users, int concurrency,
+      Footprint idle) throws InterruptedException {
+    long durationNanos =
+        TimeUnit.SECONDS.toNanos(Long.parseLong(setting("duration-seconds", "10")));
+    double writeRatio = Double.parseDouble(setting("write-ratio", "0.1"));
+    String base = "http://localhost:" + port + "/user";
+    URI registration = URI.create(base + setting("write-path", ""));
+    AtomicLong errors = new AtomicLong();
+    long[][] latencies = new long[concurrency][];
+    int[] counts = new int[concurrency];
+    Thread[] clients = new Thread[concurrency];
+    CountDownLatch started = new CountDownLatch(1);
+    long[] end = new long[1];
+    for (int i = 0; i < concurrency; i++) {
+      int worker = i;
+      latencies[worker] = new long[1024];
+      clients[worker] = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+          started.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        while (System.nanoTime() < end[0]) {
+          HttpRequest request = random.nextDouble() < writeRatio
+              ? HttpRequest.newBuilder(registration)
+                  .header("Content-Type", "application/json")
+                  .POST(HttpRequest.BodyPublishers.ofString(json(objectMapper,
+                      "registered" + registrations.incrementAndGet())))
+                  .build()
+              : HttpRequest.newBuilder(URI.create(base + "/byUsername/load" + random.nextInt(users)))
+                  .build();
+          long start = System.nanoTime();
+          try {
+            HttpResponse<Void> response =
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+              errors.incrementAndGet();
+            }
+          } catch (Exception e) {
+            errors.incrementAndGet();
+          }
+          if (counts[worker] == latencies[worker].length) {
+            latencies[worker] = Arrays.copyOf(latencies[worker], counts[worker] * 2);
+          }
+          latencies[worker][counts[worker]++] = System.nanoTime() - start;
+        }
+      });
+      clients[worker].start();
+    }
+    end[0] = System.nanoTime() + durationNanos;
+    started.countDown();
+    TimeUnit.NANOSECONDS.sleep(durationNanos / 2);
+    Footprint loaded = Footprint.measure();
+    for (Thread thread : clients) {
+      thread.join();
+    }
+    return new Result(latencies, counts, errors.get(), durationNanos,
+        loaded.threads - idle.threads - concurrency,
+        (loaded.heap - idle.heap) / 1024 / concurrency);
+  }
+
+  private static String json(ObjectMapper objectMapper, String userName) {
+    try {
+      return objectMapper.writeValueAsString(BenchmarkSupport.userDTO(userName));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class Footprint {
+
+    private final long heap;
+
+    private final int threads;
+
+    private Footprint(long heap, int threads) {
+      this.heap = heap;
+      this.threads = threads;
+    }
+
+    static Footprint measure() {
+      System.gc();
+      return new Footprint(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+          ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+  }
+
+  private static final class Result {
+
+    private final long[] latencies;
+
+    private final long errors;
+
+    private final long durationNanos;
+
+    private final int extraThreads;
+
+    private final long extraHeapPerConnection;
+
+    private Result(long[][] latencies, int[] counts, long errors, long durationNanos,
+        int extraThreads, long extraHeapPerConnection) {
+      this.latencies = new long[Arrays.stream(counts).sum()];
+      int position = 0;
+      for (int i = 0; i < counts.length; i++) {
+        System.arraycopy(latencies[i], 0, this.latencies, position, counts[i]);
+        position += counts[i];
+      }
+      Arrays.sort(this.latencies);
+      this.errors = errors;
+      this.durationNanos = durationNanos;
+      this.extraThreads = extraThreads;
+      this.extraHeapPerConnection = extraHeapPerConnection;
+    }
+
+    private double percentileMillis(double percentile) {
+      if (latencies.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile * latencies.length) - 1;
+      return latencies[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+      double throughput = latencies.length / (durationNanos / 1_000_000_000.0);
+      return String.format(Locale.ROOT, "%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%d,%d",
+          latencies.length, errors, throughput, percentileMillis(0.5), percentileMillis(0.95),
+          percentileMillis(0.99), percentileMillis(1.0), extraThreads, extraHeapPerConnection);
+    }
+  }
+}
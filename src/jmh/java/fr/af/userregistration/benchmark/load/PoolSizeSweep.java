@@ -0,0 +1,74 @@
+package fr.af.userregistration.benchmark.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@link LoadHarness} once per connection pool size of load.pool-sizes, with the "perf"
+ * profile unless another one is given, and prints every (pool size, concurrency) result as
+ * CSV. Once every size is run, the size with the best throughput at each concurrency level is
+ * printed on stderr, along with its p99 latency.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Dexec.executable=java \
+ *   -Dexec.classpathScope=test -Dexec.args="-cp %classpath \
+ *   fr.af.userregistration.benchmark.load.PoolSizeSweep load.pool-sizes=5,10,20,50 \
+ *   load.concurrency=10,50,200 load.db-latency-ms=5 load.duration-seconds=10"
+ * </pre>
+ *
+ * The other arguments are passed to every run. The client runs in the same JVM as the
+ * application: on a machine with few cores the CPU, not the pool, is the first bottleneck.
+ */
+public class PoolSizeSweep {
+
+  private static final String POOL_SIZES = "load.pool-sizes=";
+
+  private static final String PROFILES = "spring.profiles.active=";
+
+  /**
+   * Columns of a result after the configuration: requests, errors, throughput_rps, p50_ms,
+   * p95_ms, p99_ms, ...
+   */
+  private static final int THROUGHPUT = 2;
+
+  private static final int P99 = 5;
+
+  public static void main(String[] args) throws Exception {
+    String poolSizes = "5,10,20,50";
+    boolean profile = false;
+    List<String> common = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith(POOL_SIZES)) {
+        poolSizes = arg.substring(POOL_SIZES.length());
+      } else {
+        profile |= arg.startsWith(PROFILES);
+        common.add(arg);
+      }
+    }
+    if (!profile) {
+      common.add(PROFILES + "perf");
+    }
+    System.out.println("pool_size," + LoadHarness.HEADER);
+    Map<String, String[]> best = new LinkedHashMap<>();
+    for (String poolSize : poolSizes.split(",")) {
+      List<String> run = new ArrayList<>(common);
+      run.add("spring.datasource.hikari.maximum-pool-size=" + poolSize.trim());
+      run.add("spring.datasource.hikari.minimum-idle=" + poolSize.trim());
+      for (String line : new LoadHarness(run.toArray(new String[0])).run()) {
+        System.out.println(poolSize.trim() + "," + line);
+        // the configuration is quoted and may contain commas
+        String[] columns = line.substring(line.lastIndexOf('"') + 2).split(",");
+        String concurrency = columns[0];
+        String[] result = {poolSize.trim(), columns[1 + THROUGHPUT], columns[1 + P99]};
+        best.merge(concurrency, result, (current, candidate) ->
+            Double.parseDouble(candidate[1]) > Double.parseDouble(current[1])
+                ? candidate : current);
+      }
+    }
+    best.forEach((concurrency, result) -> System.err.printf(
+        "concurrency %s: best pool size %s, %s rps, p99 %s ms%n",
+        concurrency, result[0], result[1], result[2]));
+  }
+}
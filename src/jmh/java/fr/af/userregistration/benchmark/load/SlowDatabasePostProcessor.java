@@ -0,0 +1,114 @@
+package fr.af.userregistration.benchmark.load;
+
+import io.r2dbc.spi.ConnectionFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Simulates a remote database: every statement execution waits load.db-latency-ms
+ * before running against the in-memory H2.
+ * JDBC statements block their thread; R2DBC statements, used by the reactive profile,
+ * delay their results without holding a thread.
+ */
+class SlowDatabasePostProcessor implements BeanPostProcessor {
+
+  private final long latencyNanos;
+
+  SlowDatabasePostProcessor(long latencyMillis) {
+    this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (latencyNanos == 0) {
+      return bean;
+    }
+    if (bean instanceof DataSource) {
+      return new DelegatingDataSource((DataSource) bean) {
+        @Override
+        public Connection getConnection() throws java.sql.SQLException {
+          return slow(Connection.class, super.getConnection());
+        }
+      };
+    }
+    if (bean instanceof DatabaseClient) {
+      ConnectionFactory connectionFactory = ((DatabaseClient) bean).getConnectionFactory();
+      return DatabaseClient.create(reactive(ConnectionFactory.class, connectionFactory));
+    }
+    return bean;
+  }
+
+  /**
+   * Proxies an R2DBC object so that the results of its statements are delayed.
+   * Connections and statements it returns are proxied too.
+   */
+  private <T> T reactive(Class<T> type, T target) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      Object result = invoke(target, method, args);
+      if (result == target) {
+        return proxy;
+      }
+      if (target instanceof io.r2dbc.spi.Statement && method.getName().equals("execute")) {
+        return Flux.from((Publisher<?>) result).delaySubscription(Duration.ofNanos(latencyNanos));
+      }
+      if (target instanceof ConnectionFactory && method.getName().equals("create")) {
+        return Mono.from((Publisher<?>) result)
+            .map(connection -> reactive(io.r2dbc.spi.Connection.class,
+                (io.r2dbc.spi.Connection) connection));
+      }
+      if (result instanceof io.r2dbc.spi.Statement) {
+        return reactive(io.r2dbc.spi.Statement.class, (io.r2dbc.spi.Statement) result);
+      }
+      return result;
+    };
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+  }
+
+  private <T> T slow(Class<T> type, T target) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      if (method.getName().startsWith("execute")) {
+        TimeUnit.NANOSECONDS.sleep(latencyNanos);
+      }
+      Object result = invoke(target, method, args);
+      if (result instanceof Statement) {
+        return slow(statementType(method.getReturnType()), (Statement) result);
+      }
+      return result;
+    };
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<Statement> statementType(Class<?> returnType) {
+    if (CallableStatement.class.isAssignableFrom(returnType)) {
+      return (Class<Statement>) (Class<?>) CallableStatement.class;
+    }
+    if (PreparedStatement.class.isAssignableFrom(returnType)) {
+      return (Class<Statement>) (Class<?>) PreparedStatement.class;
+    }
+    return Statement.class;
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package fr.af.userregistration.benchmark.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold start benchmark of the packaged application: the JVM jar and, when built with the
+ * "native" Maven profile, the native executable.
+ * Each variant is started startup.runs times. A run measures the time from the process launch
+ * to the first successful /actuator/health, the resident memory (VmRSS) at that point, the
+ * latency of the first registration and the resident memory after startup.requests more.
+ * One CSV line is printed per run.
+ *
+ * <pre>
+ * mvn -DskipTests package                  # or -Pnative -DskipTests package
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Dexec.executable=java \
+ *   -Dexec.classpathScope=test -Dexec.args="-cp %classpath \
+ *   fr.af.userregistration.benchmark.load.StartupHarness startup.runs=5"
+ * </pre>
+ *
+ * startup.jar and startup.native override the artifacts found in target/, startup.jvm-options
+ * adds options to the JVM (comma separated). The other arguments are application properties
+ * given to every variant. Resident memory is read from /proc: Linux only.
+ */
+public class StartupHarness {
+
+  static final String HEADER = "variant,run,startup_ms,rss_started_mb,first_request_ms,"
+      + "rss_after_requests_mb";
+
+  private static final String STARTUP = "startup.";
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+  private final Map<String, String> settings = new LinkedHashMap<>();
+
+  private final Map<String, String> properties = new LinkedHashMap<>();
+
+  private final HttpClient client = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(1))
+      .build();
+
+  public StartupHarness(String... args) {
+    for (String arg : args) {
+      String[] keyValue = arg.split("=", 2);
+      if (keyValue[0].startsWith(STARTUP)) {
+        settings.put(keyValue[0].substring(STARTUP.length()), keyValue[1]);
+      } else {
+        properties.put(keyValue[0], keyValue[1]);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.out.println(HEADER);
+    new StartupHarness(args).run().forEach(System.out::println);
+  }
+
+  /**
+   * Starts every available variant startup.runs times.
+   * @return one CSV line per run
+   */
+  public List<String> run() throws Exception {
+    Map<String, List<String>> variants = new LinkedHashMap<>();
+    Path jar = settings.containsKey("jar") ? Paths.get(settings.get("jar")) : findJar();
+    if (jar != null) {
+      List<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      String options = settings.getOrDefault("jvm-options", "");
+      for (String option : options.split(",")) {
+        if (!option.isBlank()) {
+          command.add(option.trim());
+        }
+      }
+      command.add("-jar");
+      command.add(jar.toString());
+      variants.put("jvm", command);
+    }
+    Path executable = Paths.get(settings.getOrDefault("native", "target/af-user-registration"));
+    if (Files.isExecutable(executable)) {
+      variants.put("native", List.of(executable.toString(), "--spring.profiles.active=native"));
+    }
+    if (variants.isEmpty()) {
+      throw new IllegalStateException("Nothing to start, run mvn package first");
+    }
+    int runs = Integer.parseInt(settings.getOrDefault("runs", "5"));
+    int requests = Integer.parseInt(settings.getOrDefault("requests", "200"));
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+      for (int run = 1; run <= runs; run++) {
+        lines.add(variant.getKey() + "," + run + "," + start(variant.getValue(), requests));
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * The executable jar of the build: the -exec one when built with the native profile.
+   */
+  private static Path findJar() throws IOException {
+    Path target = Paths.get("target");
+    if (!Files.isDirectory(target)) {
+      return null;
+    }
+    try (Stream<Path> files = Files.list(target)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(".jar"))
+          .min((first, second) -> Boolean.compare(
+              !first.getFileName().toString().endsWith("-exec.jar"),
+              !second.getFileName().toString().endsWith("-exec.jar")))
+          .orElse(null);
+    }
+  }
+
+  private String start(List<String> command, int requests) throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    List<String> arguments = new ArrayList<>(command);
+    arguments.add("--server.port=" + port);
+    arguments.add("--spring.datasource.url=jdbc:h2:mem:startup");
+    arguments.add("--logging.level.root=WARN");
+    properties.forEach((key, value) -> arguments.add("--" + key + "=" + value));
+    String base = "http://localhost:" + port;
+    long start = System.nanoTime();
+    Process process = new ProcessBuilder(arguments)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.to(new File("/dev/null")))
+        .start();
+    try {
+      HttpRequest health = HttpRequest.newBuilder(URI.create(base + "/actuator/health")).build();
+      while (!isUp(health)) {
+        if (!process.isAlive() || System.nanoTime() - start > TIMEOUT.toNanos()) {
+          throw new IllegalStateException(command + " did not start");
+        }
+        TimeUnit.MILLISECONDS.sleep(5);
+      }
+      long startupNanos = System.nanoTime() - start;
+      long rssStarted = residentMemoryKb(process.pid());
+      long firstRequest = System.nanoTime();
+      register(base, "startup0");
+      long firstRequestNanos = System.nanoTime() - firstRequest;
+      for (int i = 1; i <= requests; i++) {
+        register(base, "startup" + i);
+      }
+      return String.format(Locale.ROOT, "%.0f,%.1f,%.2f,%.1f", startupNanos / 1_000_000.0,
+          rssStarted / 1024.0, firstRequestNanos / 1_000_000.0,
+          residentMemoryKb(process.pid()) / 1024.0);
+    } finally {
+      process.destroy();
+      if (!process.waitFor(10, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+      }
+    }
+  }
+
+  private boolean isUp(HttpRequest health) {
+    try {
+      return client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    } catch (IOException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void register(String base, String userName) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/user"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"userName\":\"" + userName
+            + "\",\"birthDate\":\"2000-01-01\",\"residenceCountry\":\"FR\"}"))
+        .build();
+    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    if (status != 200) {
+      throw new IllegalStateException("Registration answered " + status);
+    }
+  }
+
+  private static long residentMemoryKb(long pid) throws IOException {
+    for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+      if (line.startsWith("VmRSS:")) {
+        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+      }
+    }
+    return -1;
+  }
+}
@@ -2,8 +2,15 @@ package fr.af.userregistration;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@SpringBootApplication
+// R2DBC is only used by the reactive profile, see ReactiveConfig: an auto-configured
+// connection factory would switch off the JDBC DataSource and add a second transaction manager
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class,
+		R2dbcTransactionManagerAutoConfiguration.class})
+@ConfigurationPropertiesScan
 public class AfUserRegistrationApplication {
 
 	public static void main(String[] args) {
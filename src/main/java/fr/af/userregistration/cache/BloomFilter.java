@@ -0,0 +1,107 @@
+package fr.af.userregistration.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of strings answering "definitely absent" or "maybe present", in a fixed number of bits.
+ * Each string sets numHashes bits chosen by double hashing of a 64-bit hash.
+ * Adding and checking are lock-free and can run concurrently.
+ */
+final class BloomFilter {
+
+  private final long numBits;
+
+  private final int numHashes;
+
+  private final AtomicLongArray words;
+
+  private BloomFilter(long numBits, int numHashes) {
+    this.numBits = numBits;
+    this.numHashes = numHashes;
+    this.words = new AtomicLongArray(Math.toIntExact((numBits + 63) >>> 6));
+  }
+
+  /**
+   * Creates a filter with the optimal size for the given number of strings and false positive
+   * rate: numBits = -n ln(p) / ln(2)^2 and numHashes = numBits / n ln(2).
+   */
+  static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+    if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("Invalid filter size: " + expectedInsertions
+          + " insertions at a false positive rate of " + falsePositiveRate);
+    }
+    long numBits = Math.max(64,
+        (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+    int numHashes = Math.max(1,
+        (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    return new BloomFilter(numBits, numHashes);
+  }
+
+  void put(CharSequence value) {
+    long hash1 = hash(value);
+    long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+    for (int i = 0; i < numHashes; i++) {
+      long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+      long mask = 1L << bit;
+      int word = (int) (bit >>> 6);
+      if ((words.get(word) & mask) == 0) {
+        words.getAndAccumulate(word, mask, (current, added) -> current | added);
+      }
+    }
+  }
+
+  boolean mightContain(CharSequence value) {
+    long hash1 = hash(value);
+    long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+    for (int i = 0; i < numHashes; i++) {
+      long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * FNV-1a over the chars, followed by the MurmurHash3 finalizer to spread the bits.
+   */
+  private static long hash(CharSequence value) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long hash) {
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeLong(numBits);
+    out.writeInt(numHashes);
+    for (int i = 0; i < words.length(); i++) {
+      out.writeLong(words.get(i));
+    }
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(DataOutput)}.
+   * @return the filter, null if it doesn't have the size of this one
+   */
+  BloomFilter readSameSize(DataInput in) throws IOException {
+    if (in.readLong() != numBits || in.readInt() != numHashes) {
+      return null;
+    }
+    BloomFilter filter = new BloomFilter(numBits, numHashes);
+    for (int i = 0; i < filter.words.length(); i++) {
+      filter.words.set(i, in.readLong());
+    }
+    return filter;
+  }
+}
@@ -0,0 +1,225 @@
+package fr.af.userregistration.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.IdempotencyKey;
+import fr.af.userregistration.repository.IdempotencyKeyRepository;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the responses of the requests sent with an Idempotency-Key header, so that their
+ * retries get the same response without being executed again.
+ * Keys are kept in a bounded memory cache, and in the idempotency_key table too when
+ * user-registration.idempotency.persistent is set, where the expired ones are deleted in the
+ * background.
+ * A request which fails with an exception is not remembered: its retry is executed.
+ */
+@Component
+public class IdempotencyStore implements DisposableBean {
+
+  public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  /**
+   * Response header telling that the response is the one of a previous request.
+   */
+  public static final String REPLAYED = "Idempotent-Replayed";
+
+  private static final String IN_PROGRESS = "A request with this Idempotency-Key is in progress";
+
+  private static final String KEY_REUSED = "This Idempotency-Key was used for another request";
+
+  private static final long PURGE_INTERVAL = Duration.ofHours(1).toMillis();
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyStore.class);
+
+  private final Cache<String, Outcome> outcomes;
+
+  private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+  private final boolean persistent;
+
+  private final long ttl;
+
+  private final ScheduledExecutorService purges;
+
+  public IdempotencyStore(IdempotencyKeyRepository idempotencyKeyRepository,
+      UserRegistrationProperties properties) {
+    UserRegistrationProperties.Idempotency settings = properties.getIdempotency();
+    this.outcomes = Caffeine.newBuilder()
+        .maximumSize(settings.getMaximumSize())
+        .expireAfterWrite(settings.getTtl())
+        .build();
+    this.idempotencyKeyRepository = idempotencyKeyRepository;
+    this.persistent = settings.isPersistent();
+    this.ttl = settings.getTtl().toMillis();
+    this.purges = persistent ? startPurges() : null;
+  }
+
+  private ScheduledExecutorService startPurges() {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "idempotency-key-purge");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::purge, PURGE_INTERVAL, PURGE_INTERVAL,
+        TimeUnit.MILLISECONDS);
+    return executor;
+  }
+
+  /**
+   * Computes the fingerprint of a request from its fields, in a fixed order.
+   * @param fields - canonical fields of the request, null for a missing one
+   * @return SHA-256 of the fields, in Base64
+   */
+  public static String fingerprint(Object... fields) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+    for (Object field : fields) {
+      // each field is prefixed by its length, -1 when missing, so that no two lists of fields
+      // are hashed the same way
+      byte[] bytes = field == null ? new byte[0]
+          : field.toString().getBytes(StandardCharsets.UTF_8);
+      length.clear();
+      digest.update(length.putInt(field == null ? -1 : bytes.length).array());
+      digest.update(bytes);
+    }
+    return Base64.getEncoder().encodeToString(digest.digest());
+  }
+
+  /**
+   * Executes a request, unless a request with the same key was already executed.
+   * @param key - Idempotency-Key header of the request
+   * @param fingerprint - identifies the request, a key reused with another fingerprint is
+   *     rejected with a 422
+   * @param request - executes the request
+   * @return the response of the request, the one of the first request with this key when
+   *     replayed, or a 409 while the first request is still in progress
+   * @throws Exception if the request fails
+   */
+  public ResponseEntity<String> execute(String key, String fingerprint,
+      Callable<ResponseEntity<String>> request) throws Exception {
+    Outcome claim = new Outcome(fingerprint);
+    Outcome previous = outcomes.asMap().putIfAbsent(key, claim);
+    if (previous == null && persistent) {
+      previous = findPersisted(key);
+      if (previous != null) {
+        outcomes.put(key, previous);
+      }
+    }
+    if (previous != null) {
+      return replay(previous, fingerprint);
+    }
+    ResponseEntity<String> response;
+    try {
+      response = request.call();
+    } catch (Exception e) {
+      outcomes.asMap().remove(key, claim);
+      throw e;
+    }
+    claim.complete(response.getStatusCodeValue(), response.getBody());
+    if (persistent) {
+      persist(key, claim);
+    }
+    return response;
+  }
+
+  private static ResponseEntity<String> replay(Outcome outcome, String fingerprint) {
+    if (!Objects.equals(outcome.fingerprint, fingerprint)) {
+      return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(KEY_REUSED);
+    }
+    if (!outcome.isComplete()) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(IN_PROGRESS);
+    }
+    return ResponseEntity.status(outcome.status).header(REPLAYED, "true").body(outcome.body);
+  }
+
+  private Outcome findPersisted(String key) {
+    long now = System.currentTimeMillis();
+    return idempotencyKeyRepository.findById(key)
+        .filter(persisted -> persisted.getCreatedAt().getTime() + ttl > now)
+        .map(persisted -> {
+          Outcome outcome = new Outcome(persisted.getFingerprint());
+          outcome.complete(persisted.getStatus(), persisted.getBody());
+          return outcome;
+        })
+        .orElse(null);
+  }
+
+  /**
+   * Saves an outcome, inserted without being looked up first, see {@link IdempotencyKey#isNew()}.
+   * A failure only costs the replay after a restart, so it doesn't fail the request.
+   */
+  private void persist(String key, Outcome outcome) {
+    try {
+      idempotencyKeyRepository.save(new IdempotencyKey(key, outcome.fingerprint, outcome.status,
+          outcome.body, new Date()));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Idempotency-Key {} not persisted: {}", key, e.toString());
+    }
+  }
+
+  /**
+   * Deletes the outcomes which are no longer replayed, every PURGE_INTERVAL.
+   */
+  private void purge() {
+    try {
+      int deleted = idempotencyKeyRepository.deleteCreatedBefore(
+          new Date(System.currentTimeMillis() - ttl));
+      LOGGER.debug("{} expired Idempotency-Keys deleted", deleted);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Expired Idempotency-Keys not deleted: {}", e.toString());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (purges != null) {
+      purges.shutdownNow();
+    }
+  }
+
+  private static final class Outcome {
+
+    private final String fingerprint;
+
+    private volatile int status;
+
+    private volatile String body;
+
+    private Outcome(String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    private void complete(int status, String body) {
+      this.body = body;
+      this.status = status;
+    }
+
+    private boolean isComplete() {
+      return status != 0;
+    }
+  }
+}
@@ -0,0 +1,342 @@
+package fr.af.userregistration.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable sorted index of (term, user id) postings, terms being compared as unsigned UTF-8
+ * bytes. Each distinct term is stored once, in one byte array, followed by the ids of its users
+ * in one long array: every term starting with a prefix is a contiguous range, and so are their
+ * postings.
+ * About 8 bytes per posting plus the distinct terms, without any object per term or per user.
+ */
+final class TermSegment {
+
+  static final TermSegment EMPTY = new Writer(0, 0, 0).finish();
+
+  /**
+   * Distinct terms in ascending order, concatenated.
+   */
+  private final byte[] terms;
+
+  /**
+   * Start of each term in terms, followed by the end of the last one.
+   */
+  private final int[] termOffsets;
+
+  /**
+   * Start of the postings of each term in ids, followed by the end of the last one.
+   */
+  private final int[] postingOffsets;
+
+  /**
+   * Ids of the users of each term, in ascending order within a term.
+   */
+  private final long[] ids;
+
+  private TermSegment(byte[] terms, int[] termOffsets, int[] postingOffsets, long[] ids) {
+    this.terms = terms;
+    this.termOffsets = termOffsets;
+    this.postingOffsets = postingOffsets;
+    this.ids = ids;
+  }
+
+  /**
+   * Gets the number of postings.
+   * @return number of (term, id) pairs
+   */
+  int size() {
+    return ids.length;
+  }
+
+  /**
+   * Opens a cursor over the postings of the terms starting with a prefix.
+   * @param prefix - UTF-8 prefix
+   * @return cursor positioned before the first posting
+   */
+  Cursor startingWith(byte[] prefix) {
+    int termCount = termOffsets.length - 1;
+    int from = search(prefix, false, termCount);
+    int to = search(prefix, true, termCount);
+    return new Cursor(from, to);
+  }
+
+  /**
+   * Opens a cursor over every posting, to merge the segment into a new one.
+   * @return cursor positioned before the first posting
+   */
+  Cursor all() {
+    return new Cursor(0, termOffsets.length - 1);
+  }
+
+  /**
+   * Binary search of the first term greater or equal to the prefix, or of the first term
+   * greater than every term starting with it.
+   */
+  private int search(byte[] prefix, boolean afterPrefix, int termCount) {
+    int low = 0;
+    int high = termCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compare(middle, prefix);
+      if (comparison < 0 || (afterPrefix && comparison == 0)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Compares a term to a prefix.
+   * @return 0 if the term starts with the prefix, the order of the term otherwise
+   */
+  private int compare(int term, byte[] prefix) {
+    int start = termOffsets[term];
+    int length = termOffsets[term + 1] - start;
+    int common = Math.min(length, prefix.length);
+    int mismatch = Arrays.mismatch(terms, start, start + common, prefix, 0, common);
+    if (mismatch >= 0) {
+      return Byte.toUnsignedInt(terms[start + mismatch]) - Byte.toUnsignedInt(prefix[mismatch]);
+    }
+    return length >= prefix.length ? 0 : -1;
+  }
+
+  /**
+   * Iterates postings in (term, id) order.
+   */
+  final class Cursor {
+
+    private int term;
+
+    private int posting;
+
+    private final int endPosting;
+
+    private byte[] currentTerm;
+
+    private Cursor(int fromTerm, int toTerm) {
+      this.term = fromTerm;
+      this.posting = postingOffsets[fromTerm] - 1;
+      this.endPosting = postingOffsets[toTerm];
+    }
+
+    /**
+     * Moves to the next posting.
+     * @return false if there is none
+     */
+    boolean next() {
+      if (++posting >= endPosting) {
+        return false;
+      }
+      if (posting >= postingOffsets[term + 1]) {
+        term++;
+        currentTerm = null;
+      }
+      return true;
+    }
+
+    /**
+     * Gets the term of the current posting, copied once per term.
+     * @return UTF-8 term
+     */
+    byte[] term() {
+      if (currentTerm == null) {
+        currentTerm = Arrays.copyOfRange(terms, termOffsets[term], termOffsets[term + 1]);
+      }
+      return currentTerm;
+    }
+
+    long id() {
+      return ids[posting];
+    }
+  }
+
+  /**
+   * Collects postings in any order, then sorts them into a segment.
+   * Terms are appended to a single byte array, sorting moves int indexes only.
+   */
+  static final class Builder {
+
+    private byte[] bytes;
+
+    private int byteCount;
+
+    /**
+     * Start of each term in bytes, followed by the end of the last one.
+     */
+    private int[] starts;
+
+    private long[] ids;
+
+    private int count;
+
+    Builder(int expectedPostings) {
+      int capacity = Math.max(16, expectedPostings);
+      this.bytes = new byte[capacity * 8];
+      this.starts = new int[capacity + 1];
+      this.ids = new long[capacity];
+    }
+
+    void add(String term, long id) {
+      add(term.getBytes(StandardCharsets.UTF_8), id);
+    }
+
+    void add(byte[] term, long id) {
+      if (count == ids.length) {
+        int capacity = count + (count >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        starts = Arrays.copyOf(starts, capacity + 1);
+      }
+      if (byteCount + term.length > bytes.length) {
+        bytes = Arrays.copyOf(bytes,
+            Math.max(byteCount + term.length, bytes.length + (bytes.length >> 1)));
+      }
+      System.arraycopy(term, 0, bytes, byteCount, term.length);
+      byteCount += term.length;
+      ids[count++] = id;
+      starts[count] = byteCount;
+    }
+
+    int size() {
+      return count;
+    }
+
+    TermSegment build() {
+      int[] order = new int[count];
+      for (int i = 0; i < count; i++) {
+        order[i] = i;
+      }
+      sort(order, 0, count - 1);
+      Writer writer = new Writer(count, count / 2, byteCount / 2);
+      for (int entry : order) {
+        writer.append(bytes, starts[entry], starts[entry + 1] - starts[entry], ids[entry]);
+      }
+      return writer.finish();
+    }
+
+    private int compare(int first, int second) {
+      int comparison = Arrays.compareUnsigned(bytes, starts[first], starts[first + 1],
+          bytes, starts[second], starts[second + 1]);
+      return comparison != 0 ? comparison : Long.compare(ids[first], ids[second]);
+    }
+
+    /**
+     * Quicksort with a median of three pivot, recursing on the smaller side only.
+     */
+    private void sort(int[] order, int low, int high) {
+      while (high - low > 16) {
+        int middle = (low + high) >>> 1;
+        if (compare(order[middle], order[low]) < 0) {
+          swap(order, middle, low);
+        }
+        if (compare(order[high], order[low]) < 0) {
+          swap(order, high, low);
+        }
+        if (compare(order[high], order[middle]) < 0) {
+          swap(order, high, middle);
+        }
+        int pivot = order[middle];
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (compare(order[i], pivot) < 0) {
+            i++;
+          }
+          while (compare(order[j], pivot) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(order, i++, j--);
+          }
+        }
+        if (j - low < high - i) {
+          sort(order, low, j);
+          low = i;
+        } else {
+          sort(order, i, high);
+          high = j;
+        }
+      }
+      for (int i = low + 1; i <= high; i++) {
+        int entry = order[i];
+        int j = i - 1;
+        while (j >= low && compare(order[j], entry) > 0) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = entry;
+      }
+    }
+
+    private static void swap(int[] order, int i, int j) {
+      int entry = order[i];
+      order[i] = order[j];
+      order[j] = entry;
+    }
+  }
+
+  /**
+   * Writes postings given in (term, id) order into a segment, dropping repeated postings.
+   */
+  static final class Writer {
+
+    private byte[] terms;
+
+    private int termBytes;
+
+    private int[] termOffsets;
+
+    private int[] postingOffsets;
+
+    private int termCount;
+
+    private long[] ids;
+
+    private int count;
+
+    Writer(int expectedPostings, int expectedTerms, int expectedTermBytes) {
+      this.terms = new byte[Math.max(16, expectedTermBytes)];
+      this.termOffsets = new int[Math.max(16, expectedTerms) + 1];
+      this.postingOffsets = new int[termOffsets.length];
+      this.ids = new long[Math.max(16, expectedPostings)];
+    }
+
+    void append(byte[] source, int from, int length, long id) {
+      boolean sameTerm = termCount > 0 && Arrays.equals(terms, termOffsets[termCount - 1],
+          termBytes, source, from, from + length);
+      if (sameTerm && ids[count - 1] == id) {
+        return;
+      }
+      if (!sameTerm) {
+        if (termCount + 1 == termOffsets.length) {
+          termOffsets =
+              Arrays.copyOf(termOffsets, termOffsets.length + (termOffsets.length >> 1));
+          postingOffsets = Arrays.copyOf(postingOffsets, termOffsets.length);
+        }
+        if (termBytes + length > terms.length) {
+          terms = Arrays.copyOf(terms,
+              Math.max(termBytes + length, terms.length + (terms.length >> 1)));
+        }
+        System.arraycopy(source, from, terms, termBytes, length);
+        termOffsets[termCount] = termBytes;
+        postingOffsets[termCount] = count;
+        termBytes += length;
+        termCount++;
+      }
+      if (count == ids.length) {
+        ids = Arrays.copyOf(ids, count + (count >> 1));
+      }
+      ids[count++] = id;
+    }
+
+    TermSegment finish() {
+      termOffsets[termCount] = termBytes;
+      postingOffsets[termCount] = count;
+      return new TermSegment(Arrays.copyOf(terms, termBytes),
+          Arrays.copyOf(termOffsets, termCount + 1), Arrays.copyOf(postingOffsets, termCount + 1),
+          Arrays.copyOf(ids, count));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package fr.af.userregistration.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Optional;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of users by normalized username, evicted by size (W-TinyLFU) and by age.
+ * Unknown usernames are cached too, for a shorter time.
+ * Hit, miss and eviction counters are published as "cache.*" metrics with the tag
+ * cache=users.byUserName.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+  private static final String NAME = "users.byUserName";
+
+  private final Cache<String, Optional<User>> cache;
+
+  public UserCache(UserRegistrationProperties properties) {
+    long ttl = properties.getCache().getTtl().toNanos();
+    long negativeTtl = properties.getCache().getNegativeTtl().toNanos();
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(properties.getCache().getMaximumSize())
+        .expireAfter(new Expiry<String, Optional<User>>() {
+          @Override
+          public long expireAfterCreate(String userName, Optional<User> user, long currentTime) {
+            return user.isPresent() ? ttl : negativeTtl;
+          }
+
+          @Override
+          public long expireAfterUpdate(String userName, Optional<User> user, long currentTime,
+              long currentDuration) {
+            return expireAfterCreate(userName, user, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String userName, Optional<User> user, long currentTime,
+              long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Gets the user with the given username, loading it on a miss.
+   * @param userName - user's username, in any case
+   * @param loader - reads the user from the database by its normalized username
+   * @return the user, empty if it doesn't exist
+   */
+  public Optional<User> get(String userName, Function<String, Optional<User>> loader) {
+    return cache.get(User.normalizeUserName(userName), loader);
+  }
+
+  /**
+   * Forgets what is known about a username, to be called when it is registered.
+   * @param userName - user's username, in any case
+   */
+  public void invalidate(String userName) {
+    if (userName != null) {
+      cache.invalidate(User.normalizeUserName(userName));
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, NAME);
+  }
+}
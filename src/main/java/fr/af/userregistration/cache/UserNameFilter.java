@@ -0,0 +1,166 @@
+package fr.af.userregistration.cache;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bloom filter of the registered usernames, normalized, telling without any I/O that a
+ * username is free; "maybe taken" answers have to be checked against the database.
+ * It is filled from the database before the application accepts requests, then kept up to date
+ * by the registrations of this instance.
+ * When user-registration.availability.snapshot is set, it is saved there on shutdown with the
+ * highest id it contains, and on startup only the users registered after that id are read.
+ * Registrations made by other instances after the snapshot, with lower ids, are not seen.
+ */
+@Component
+public class UserNameFilter implements SmartInitializingSingleton, DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserNameFilter.class);
+
+  private static final int SNAPSHOT_MAGIC = 0x554E4246;
+
+  private final UserRepository userRepository;
+
+  private final UserRegistrationProperties.Availability settings;
+
+  private final Path snapshot;
+
+  private final Pageable page;
+
+  private volatile BloomFilter filter;
+
+  /**
+   * Highest id of the users added to the filter.
+   */
+  private final AtomicLong watermark = new AtomicLong();
+
+  public UserNameFilter(UserRepository userRepository, UserRegistrationProperties properties) {
+    this.userRepository = userRepository;
+    this.settings = properties.getAvailability();
+    String snapshotFile = settings.getSnapshot();
+    this.snapshot = snapshotFile == null || snapshotFile.isBlank() ? null : Paths.get(snapshotFile);
+    this.page = PageRequest.of(0, properties.getExport().getPageSize());
+    this.filter = newFilter();
+  }
+
+  private BloomFilter newFilter() {
+    return BloomFilter.create(settings.getExpectedUsers(), settings.getFalsePositiveRate());
+  }
+
+  /**
+   * Fills the filter once every bean is ready, before the web server starts.
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    long start = System.nanoTime();
+    boolean restored = restore();
+    long afterId = watermark.get();
+    long read = 0;
+    List<User> users = userRepository.findUsersAfter(afterId, Long.MAX_VALUE, page);
+    while (!users.isEmpty()) {
+      users.forEach(user -> add(user.getUserName(), user.getId()));
+      read += users.size();
+      afterId = users.get(users.size() - 1).getId();
+      users = users.size() < page.getPageSize() ? List.of()
+          : userRepository.findUsersAfter(afterId, Long.MAX_VALUE, page);
+    }
+    LOGGER.info("Username filter loaded in {} ms: {}{} users read from the database",
+        (System.nanoTime() - start) / 1_000_000, restored ? "snapshot " + snapshot + " and " : "",
+        read);
+  }
+
+  /**
+   * Reads the snapshot, if any, unless it is inconsistent with the database.
+   * @return true if the snapshot was read
+   */
+  private boolean restore() {
+    if (snapshot == null || !Files.isRegularFile(snapshot)) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshot)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        LOGGER.warn("Ignoring {}: not a username filter snapshot", snapshot);
+        return false;
+      }
+      long snapshotWatermark = in.readLong();
+      if (snapshotWatermark > userRepository.findMaxId().orElse(0L)) {
+        LOGGER.warn("Ignoring {}: it has users the database doesn't have", snapshot);
+        return false;
+      }
+      BloomFilter restored = filter.readSameSize(in);
+      if (restored == null) {
+        LOGGER.warn("Ignoring {}: the filter size changed", snapshot);
+        return false;
+      }
+      filter = restored;
+      watermark.set(snapshotWatermark);
+      return true;
+    } catch (IOException e) {
+      LOGGER.warn("Ignoring {}: {}", snapshot, e.toString());
+      return false;
+    }
+  }
+
+  /**
+   * Saves the filter to the snapshot file, through a temporary file so that a crash never
+   * leaves a partial snapshot.
+   */
+  @Override
+  public void destroy() throws IOException {
+    if (snapshot == null) {
+      return;
+    }
+    Path directory = snapshot.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(watermark.get());
+      filter.writeTo(out);
+    }
+    Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Adds a registered user.
+   * @param userName - user's username, in any case
+   * @param id - user's id
+   */
+  public void add(String userName, Long id) {
+    filter.put(User.normalizeUserName(userName));
+    if (id != null) {
+      watermark.accumulateAndGet(id, Math::max);
+    }
+  }
+
+  /**
+   * Tells whether a username may be registered.
+   * @param userName - username, in any case
+   * @return false if the username is definitely free, true if it has to be checked
+   */
+  public boolean mightBeTaken(String userName) {
+    return filter.mightContain(User.normalizeUserName(userName));
+  }
+}
@@ -0,0 +1,289 @@
+package fr.af.userregistration.cache;
+
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Binary layout of a user in {@link UserRecordStore}, written and read at absolute positions so
+ * that a buffer can be read by several threads at once.
+ *
+ * <pre>
+ * int    hash of the normalized username, see {@link #hash(String)}
+ * long   id
+ * int    birth date as an epoch day, {@link Integer#MIN_VALUE} if none
+ * short  residence country, two ASCII letters, 0 if none
+ * byte   gender ordinal + 1, 0 if none
+ * byte   flags: {@link #PHONE_TEXT}, {@link #COUNTRY_TEXT}
+ * long   phone number, see {@link #packPhone(String)}, 0 if none
+ * text   username, first name, last name, then the phone number and the country when they
+ *        can't be packed: varint UTF-8 length + 1 (0 for null) followed by the bytes
+ * </pre>
+ */
+public final class UserRecordCodec {
+
+  static final int HASH = 0;
+
+  private static final int ID = 4;
+
+  private static final int BIRTH_DATE = 12;
+
+  private static final int COUNTRY = 20;
+
+  private static final int GENDER = 22;
+
+  private static final int FLAGS = 23;
+
+  private static final int PHONE = 24;
+
+  static final int TEXT = 32;
+
+  private static final int NO_DATE = Integer.MIN_VALUE;
+
+  private static final byte PHONE_TEXT = 1;
+
+  private static final byte COUNTRY_TEXT = 2;
+
+  /**
+   * Longest phone number packed as a long, its digit count taking the 5 upper bits.
+   */
+  private static final int MAX_PACKED_DIGITS = 17;
+
+  private static final int DIGIT_COUNT_SHIFT = 57;
+
+  private static final Gender[] GENDERS = Gender.values();
+
+  private UserRecordCodec() {
+  }
+
+  /**
+   * Hash of a username, ignoring case, spread over the 32 bits.
+   * @param userName - username, in any case
+   * @return hash, the same for every case of the username
+   */
+  public static int hash(String userName) {
+    long h = User.normalizeUserName(userName).hashCode() * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Gets the UTF-8 encoding of the texts of a user, computed once to size then write its record.
+   * @param user - user to encode
+   * @return username, first name, last name, phone and country texts, null when not written
+   */
+  public static byte[][] texts(User user) {
+    return new byte[][] {utf8(user.getUserName()), utf8(user.getFirstName()),
+        utf8(user.getLastName()), packPhone(user.getPhoneNumber()) < 0
+            ? utf8(user.getPhoneNumber()) : null,
+        packCountry(user.getResidenceCountry()) < 0 ? utf8(user.getResidenceCountry()) : null};
+  }
+
+  private static byte[] utf8(String text) {
+    return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the size of the record of a user.
+   * @param texts - see {@link #texts(User)}
+   * @return number of bytes written by {@link #encode(User, byte[][], ByteBuffer, int)}
+   */
+  public static int size(byte[][] texts) {
+    int size = TEXT;
+    for (int i = 0; i < texts.length; i++) {
+      if (i < 3 || texts[i] != null) {
+        int length = texts[i] == null ? 0 : texts[i].length;
+        size += varIntSize(length + 1) + length;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Writes the record of a user.
+   * @param user - user to encode
+   * @param texts - see {@link #texts(User)}
+   * @param buffer - destination, its position is left unchanged
+   * @param offset - position of the record in the buffer
+   * @return position following the record
+   */
+  public static int encode(User user, byte[][] texts, ByteBuffer buffer, int offset) {
+    long phone = packPhone(user.getPhoneNumber());
+    int country = packCountry(user.getResidenceCountry());
+    byte flags = (byte) ((phone < 0 ? PHONE_TEXT : 0) | (country < 0 ? COUNTRY_TEXT : 0));
+    buffer.putInt(offset + HASH, hash(user.getUserName()));
+    buffer.putLong(offset + ID, user.getId() == null ? 0 : user.getId());
+    buffer.putInt(offset + BIRTH_DATE, epochDay(user.getBirthDate()));
+    buffer.putShort(offset + COUNTRY, (short) Math.max(country, 0));
+    buffer.put(offset + GENDER,
+        (byte) (user.getGender() == null ? 0 : user.getGender().ordinal() + 1));
+    buffer.put(offset + FLAGS, flags);
+    buffer.putLong(offset + PHONE, Math.max(phone, 0));
+    int position = offset + TEXT;
+    for (int i = 0; i < texts.length; i++) {
+      if (i < 3 || texts[i] != null) {
+        position = putText(texts[i], buffer, position);
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Reads the record of a user.
+   * @param buffer - source, its position is left unchanged
+   * @param offset - position of the record in the buffer
+   * @return a detached user
+   */
+  public static User decode(ByteBuffer buffer, int offset) {
+    byte flags = buffer.get(offset + FLAGS);
+    int[] position = {offset + TEXT};
+    String userName = getText(buffer, position);
+    String firstName = getText(buffer, position);
+    String lastName = getText(buffer, position);
+    String phone = (flags & PHONE_TEXT) != 0 ? getText(buffer, position)
+        : unpackPhone(buffer.getLong(offset + PHONE));
+    String country = (flags & COUNTRY_TEXT) != 0 ? getText(buffer, position)
+        : unpackCountry(buffer.getShort(offset + COUNTRY));
+    int gender = buffer.get(offset + GENDER);
+    int epochDay = buffer.getInt(offset + BIRTH_DATE);
+    long id = buffer.getLong(offset + ID);
+    return new User(id == 0 ? null : id, userName, firstName, lastName, country,
+        epochDay == NO_DATE ? null : java.sql.Date.valueOf(LocalDate.ofEpochDay(epochDay)),
+        phone, gender == 0 ? null : GENDERS[gender - 1]);
+  }
+
+  /**
+   * Tells whether a record is the one of a username, without decoding the rest of the record.
+   * @param buffer - source, its position is left unchanged
+   * @param offset - position of the record in the buffer
+   * @param userName - normalized username
+   * @return true if the record has this username, ignoring case
+   */
+  public static boolean hasUserName(ByteBuffer buffer, int offset, String userName) {
+    String recorded = getText(buffer, new int[] {offset + TEXT});
+    return userName.equals(User.normalizeUserName(recorded));
+  }
+
+  /**
+   * Packs a phone number made of up to 17 digits: the digit count, keeping the leading zeros, in
+   * the upper bits and the number in the lower ones.
+   * @param phone - phone number, may be null
+   * @return packed phone, 0 if null, -1 if it can't be packed
+   */
+  static long packPhone(String phone) {
+    if (phone == null) {
+      return 0;
+    }
+    int length = phone.length();
+    if (length == 0 || length > MAX_PACKED_DIGITS) {
+      return -1;
+    }
+    long number = 0;
+    for (int i = 0; i < length; i++) {
+      char c = phone.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      number = number * 10 + (c - '0');
+    }
+    return ((long) length << DIGIT_COUNT_SHIFT) | number;
+  }
+
+  static String unpackPhone(long packed) {
+    if (packed == 0) {
+      return null;
+    }
+    char[] digits = new char[(int) (packed >>> DIGIT_COUNT_SHIFT)];
+    long number = packed & ((1L << DIGIT_COUNT_SHIFT) - 1);
+    for (int i = digits.length - 1; i >= 0; i--) {
+      digits[i] = (char) ('0' + number % 10);
+      number /= 10;
+    }
+    return new String(digits);
+  }
+
+  /**
+   * Packs a country code made of two ASCII letters or digits.
+   * @return packed code, 0 if null, -1 if it can't be packed
+   */
+  private static int packCountry(String country) {
+    if (country == null) {
+      return 0;
+    }
+    if (country.length() != 2 || country.charAt(0) == 0 || country.charAt(0) > 0x7F
+        || country.charAt(1) == 0 || country.charAt(1) > 0x7F) {
+      return -1;
+    }
+    return country.charAt(0) << 8 | country.charAt(1);
+  }
+
+  private static String unpackCountry(short packed) {
+    return packed == 0 ? null
+        : new String(new char[] {(char) ((packed >> 8) & 0x7F), (char) (packed & 0x7F)});
+  }
+
+  /**
+   * Gets the epoch day of a date: the one of the database for a java.sql.Date, the one of the
+   * default time zone otherwise, as Hibernate does when saving it.
+   */
+  private static int epochDay(Date date) {
+    if (date == null) {
+      return NO_DATE;
+    }
+    LocalDate day = date instanceof java.sql.Date ? ((java.sql.Date) date).toLocalDate()
+        : Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    return (int) day.toEpochDay();
+  }
+
+  private static int varIntSize(int value) {
+    int size = 1;
+    while ((value >>>= 7) != 0) {
+      size++;
+    }
+    return size;
+  }
+
+  private static int putText(byte[] text, ByteBuffer buffer, int position) {
+    int value = text == null ? 0 : text.length + 1;
+    while ((value & ~0x7F) != 0) {
+      buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put(position++, (byte) value);
+    if (text != null) {
+      for (byte b : text) {
+        buffer.put(position++, b);
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Reads a text, moving position[0] after it.
+   */
+  private static String getText(ByteBuffer buffer, int[] position) {
+    int p = position[0];
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get(p++);
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    if (value == 0) {
+      position[0] = p;
+      return null;
+    }
+    byte[] text = new byte[value - 1];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = buffer.get(p++);
+    }
+    position[0] = p;
+    return new String(text, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,261 @@
+package fr.af.userregistration.cache;
+
+import fr.af.userregistration.entity.User;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Files of the {@link UserRecordStore} in its snapshot directory.
+ *
+ * users.snapshot is the whole store: a header, the lookup table, then the chunks of records as
+ * they are in memory, so that they are mapped back as is.
+ *
+ * <pre>
+ * int    magic, int version, int chunk size, int chunk count, int length of the last chunk,
+ * int    users, int table slots, long highest id, long first change log to replay, padded to 64
+ * long[] lookup table
+ * byte[] chunks, each one chunk size long but the last one
+ * </pre>
+ *
+ * users.N.log are the change logs: the records added after the snapshot, each one preceded by
+ * its length and its CRC-32, so that a record torn by a crash is detected and ignored.
+ * A snapshot starts a new change log and, once written, deletes the ones it contains.
+ */
+final class UserRecordSnapshot {
+
+  private static final int MAGIC = 0x55525353;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER = 64;
+
+  private static final int SLOTS_BUFFER = 1 << 20;
+
+  private static final String SNAPSHOT = "users.snapshot";
+
+  private static final Pattern LOG = Pattern.compile("users\\.(\\d+)\\.log");
+
+  private UserRecordSnapshot() {
+  }
+
+  /**
+   * Writes a snapshot, replacing the previous one once complete.
+   * @param directory - snapshot directory
+   * @param state - records and table, they must not change while written
+   */
+  static void write(Path directory, State state) throws IOException {
+    Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      header.putInt(MAGIC).putInt(VERSION).putInt(state.chunkSize).putInt(state.chunks.length)
+          .putInt(state.lastChunkLength).putInt(state.size).putInt(state.slots.length)
+          .putLong(state.maxId).putLong(state.logGeneration).clear();
+      writeFully(channel, header);
+      ByteBuffer slots = ByteBuffer.allocate(SLOTS_BUFFER);
+      for (int i = 0; i < state.slots.length; ) {
+        slots.clear();
+        while (slots.remaining() >= Long.BYTES && i < state.slots.length) {
+          slots.putLong(state.slots[i++]);
+        }
+        slots.flip();
+        writeFully(channel, slots);
+      }
+      for (int i = 0; i < state.chunks.length; i++) {
+        boolean last = i == state.chunks.length - 1;
+        ByteBuffer chunk = state.chunks[i].duplicate();
+        chunk.clear().limit(last ? state.lastChunkLength : chunk.capacity());
+        writeFully(channel, chunk);
+        if (!last) {
+          // the last chunk of a restored snapshot is shorter, and was never appended to
+          channel.position(channel.position() + state.chunkSize - chunk.capacity());
+        }
+      }
+      channel.force(false);
+    }
+    Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    for (long generation : logGenerations(directory)) {
+      if (generation < state.logGeneration) {
+        Files.deleteIfExists(log(directory, generation));
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Maps the snapshot of a directory: the records stay in the file, only the table is read.
+   * @param directory - snapshot directory
+   * @param chunkSize - chunk size of the store, a snapshot of another size is ignored
+   * @return the snapshot, null if there is none to restore
+   */
+  static State read(Path directory, int chunkSize) throws IOException {
+    Path file = directory.resolve(SNAPSHOT);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION
+          || header.getInt() != chunkSize) {
+        return null;
+      }
+      State state = new State();
+      state.chunkSize = chunkSize;
+      state.chunks = new ByteBuffer[header.getInt()];
+      state.lastChunkLength = header.getInt();
+      state.size = header.getInt();
+      state.slots = new long[header.getInt()];
+      state.maxId = header.getLong();
+      state.logGeneration = header.getLong();
+      long position = HEADER;
+      long slotsLength = (long) state.slots.length * Long.BYTES;
+      channel.map(FileChannel.MapMode.READ_ONLY, position, slotsLength)
+          .asLongBuffer().get(state.slots);
+      position += slotsLength;
+      for (int i = 0; i < state.chunks.length; i++) {
+        int length = i == state.chunks.length - 1 ? state.lastChunkLength : chunkSize;
+        state.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+      }
+      return state;
+    }
+  }
+
+  /**
+   * Gets the generations of the change logs of a directory.
+   * @return generations in ascending order
+   */
+  static List<Long> logGenerations(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> LOG.matcher(file.getFileName().toString()))
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  static Path log(Path directory, long generation) {
+    return directory.resolve("users." + generation + ".log");
+  }
+
+  /**
+   * Reads the records of a change log, up to the first incomplete or corrupted one.
+   * @param file - change log
+   * @param consumer - receives the users in the order they were logged
+   * @return number of records read
+   */
+  static int replay(Path file, Consumer<User> consumer) throws IOException {
+    List<User> users = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      CRC32 crc = new CRC32();
+      while (log.remaining() >= 2 * Integer.BYTES) {
+        int length = log.getInt();
+        int checksum = log.getInt();
+        if (length <= 0 || length > log.remaining()) {
+          break;
+        }
+        ByteBuffer record = log.slice();
+        record.limit(length);
+        crc.reset();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+        users.add(UserRecordCodec.decode(record, 0));
+        log.position(log.position() + length);
+      }
+    }
+    users.forEach(consumer);
+    return users.size();
+  }
+
+  /**
+   * Change log being appended to.
+   */
+  static final class ChangeLog {
+
+    private final FileChannel channel;
+
+    private final long generation;
+
+    private final ByteBuffer prefix = ByteBuffer.allocate(2 * Integer.BYTES);
+
+    private final CRC32 crc = new CRC32();
+
+    ChangeLog(Path directory, long generation) throws IOException {
+      this.channel = FileChannel.open(log(directory, generation), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      this.generation = generation;
+    }
+
+    long getGeneration() {
+      return generation;
+    }
+
+    /**
+     * Appends a record, to be called by one thread at a time.
+     * The record reaches the operating system, not necessarily the disk.
+     * @param chunk - chunk of the record
+     * @param offset - position of the record in the chunk
+     * @param length - length of the record
+     */
+    void append(ByteBuffer chunk, int offset, int length) throws IOException {
+      ByteBuffer record = chunk.duplicate();
+      record.limit(offset + length).position(offset);
+      crc.reset();
+      crc.update(record.duplicate());
+      prefix.clear();
+      prefix.putInt(length).putInt((int) crc.getValue()).flip();
+      writeFully(channel, prefix);
+      writeFully(channel, record);
+    }
+
+    void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Content of a snapshot.
+   */
+  static final class State {
+
+    int chunkSize;
+
+    ByteBuffer[] chunks;
+
+    int lastChunkLength;
+
+    int size;
+
+    long[] slots;
+
+    long maxId;
+
+    /**
+     * First change log not contained in the snapshot.
+     */
+    long logGeneration;
+  }
+}
@@ -0,0 +1,525 @@
+package fr.af.userregistration.cache;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-side copy of every user, serving username lookups without Hibernate nor any object
+ * kept on the heap per user, enabled by user-registration.record-store.enabled.
+ * Users are encoded by {@link UserRecordCodec} and appended to chunks of
+ * user-registration.record-store.chunk-size bytes allocated off-heap, or mapped from
+ * user-registration.record-store.file when it is set. They are found through an open addressing
+ * table of longs: 24 bits of the username hash and the address of the record.
+ * It is filled from the database before the application accepts requests, then kept up to date
+ * by the registrations of this instance. Lookups never lock.
+ *
+ * When user-registration.record-store.snapshot-directory is set, the store is saved there every
+ * snapshot-interval and on shutdown, and every user added in between is appended to a change
+ * log, see {@link UserRecordSnapshot}. On startup the snapshot is mapped instead of read, the
+ * change logs are replayed, and only the users of the database with a higher id are loaded.
+ * When the database lost the restored users, an in-memory one after a restart, user ids are
+ * moved past the restored ones and the users are copied back to the database in the background,
+ * the search index being reloaded once done.
+ */
+@Component
+public class UserRecordStore implements SmartInitializingSingleton, DisposableBean, MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserRecordStore.class);
+
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private static final int ADDRESS_BITS = 40;
+
+  private static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+
+  private final UserRepository userRepository;
+
+  private final UserSearchIndex userSearchIndex;
+
+  private final boolean enabled;
+
+  private final int chunkSize;
+
+  private final Path file;
+
+  private final Path snapshotDirectory;
+
+  private final Duration snapshotInterval;
+
+  private final Pageable page;
+
+  private FileChannel channel;
+
+  private int mappedChunks;
+
+  private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+  /**
+   * Tag and address + 1 of the records, 0 for an empty slot.
+   */
+  private volatile long[] slots;
+
+  /**
+   * Position of the next record in the last chunk, guarded by this.
+   */
+  private int position;
+
+  private volatile int size;
+
+  /**
+   * Highest id of the users, guarded by this.
+   */
+  private long maxId;
+
+  /**
+   * Change log of the users added since the last snapshot, guarded by this.
+   */
+  private UserRecordSnapshot.ChangeLog changeLog;
+
+  private ScheduledExecutorService snapshots;
+
+  /**
+   * Taken while a snapshot is written, one at a time.
+   */
+  private final Object snapshotLock = new Object();
+
+  /**
+   * Number of users read from the change logs on startup.
+   */
+  private int replayed;
+
+  /**
+   * Generation of the change log opened once the store is loaded.
+   */
+  private long logGeneration;
+
+  public UserRecordStore(UserRepository userRepository, UserSearchIndex userSearchIndex,
+      UserRegistrationProperties properties) {
+    UserRegistrationProperties.RecordStore settings = properties.getRecordStore();
+    this.userRepository = userRepository;
+    this.userSearchIndex = userSearchIndex;
+    this.enabled = settings.isEnabled();
+    this.chunkSize = (int) Math.min(Integer.MAX_VALUE, settings.getChunkSize().toBytes());
+    this.file = path(settings.getFile());
+    this.snapshotDirectory = path(settings.getSnapshotDirectory());
+    this.snapshotInterval = settings.getSnapshotInterval();
+    this.page = PageRequest.of(0, properties.getExport().getPageSize());
+    int capacity = Integer.highestOneBit(
+        (int) Math.min(1 << 30, Math.max(16, settings.getInitialCapacity() * 4 / 3)) - 1) << 1;
+    this.slots = enabled ? new long[capacity] : new long[0];
+  }
+
+  private static Path path(String file) {
+    return file == null || file.isBlank() ? null : Paths.get(file);
+  }
+
+  /**
+   * Tells whether lookups should be served by the store.
+   * @return the value of user-registration.record-store.enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Fills the store once every bean is ready, before the web server starts.
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (!enabled) {
+      return;
+    }
+    long start = System.nanoTime();
+    boolean restored = snapshotDirectory != null && restore();
+    long restoredMaxId = maxId;
+    long databaseMaxId = restored ? userRepository.findMaxId().orElse(0L) : 0;
+    long afterId = restoredMaxId;
+    long loaded = 0;
+    List<User> users = userRepository.findUsersAfter(afterId, Long.MAX_VALUE, page);
+    while (!users.isEmpty()) {
+      users.forEach(this::put);
+      loaded += users.size();
+      afterId = users.get(users.size() - 1).getId();
+      users = users.size() < page.getPageSize() ? List.of()
+          : userRepository.findUsersAfter(afterId, Long.MAX_VALUE, page);
+    }
+    LOGGER.info("User record store loaded in {} ms: {} users, {} bytes",
+        (System.nanoTime() - start) / 1_000_000, size, usedBytes());
+    if (snapshotDirectory != null) {
+      // the users read from the database are not logged: like the replayed ones, they are
+      // saved by a first snapshot taken at once
+      openChangeLog();
+      startSnapshots(replayed > 0 || loaded > 0 ? 0 : snapshotInterval.toMillis());
+    }
+    if (restored && databaseMaxId < restoredMaxId) {
+      userRepository.restartIdsAfter(restoredMaxId);
+      Thread copy = new Thread(() -> copyToDatabase(databaseMaxId, restoredMaxId),
+          "user-table-restore");
+      copy.setDaemon(true);
+      copy.start();
+    }
+  }
+
+  /**
+   * Maps the snapshot and replays the change logs. The next change log is only opened once
+   * the users of the database are loaded too.
+   * @return true if there was something to restore
+   */
+  private boolean restore() {
+    try {
+      Files.createDirectories(snapshotDirectory);
+      UserRecordSnapshot.State snapshot = UserRecordSnapshot.read(snapshotDirectory, chunkSize);
+      long generation = 0;
+      if (snapshot != null) {
+        synchronized (this) {
+          chunks = snapshot.chunks;
+          // the last chunk is read-only, the next record starts a new one
+          position = chunkSize;
+          slots = snapshot.slots.length >= slots.length ? snapshot.slots
+              : rehash(snapshot.slots, slots.length);
+          size = snapshot.size;
+          maxId = snapshot.maxId;
+        }
+        generation = snapshot.logGeneration;
+      }
+      for (long logGeneration : UserRecordSnapshot.logGenerations(snapshotDirectory)) {
+        if (logGeneration >= generation) {
+          replayed += UserRecordSnapshot.replay(
+              UserRecordSnapshot.log(snapshotDirectory, logGeneration), this::put);
+          generation = logGeneration + 1;
+        }
+      }
+      logGeneration = generation;
+      LOGGER.info("User record store restored from {}: {} users, {} from the change logs",
+          snapshotDirectory, size, replayed);
+      return snapshot != null || replayed > 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private synchronized void openChangeLog() {
+    try {
+      changeLog = new UserRecordSnapshot.ChangeLog(snapshotDirectory, logGeneration);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void startSnapshots(long initialDelay) {
+    snapshots = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "user-record-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = snapshotInterval.toMillis();
+    snapshots.scheduleWithFixedDelay(() -> {
+      try {
+        snapshot();
+      } catch (IOException | RuntimeException e) {
+        LOGGER.error("User record store snapshot failed", e);
+      }
+    }, initialDelay, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Saves the store in its snapshot directory and starts a new change log.
+   * Registrations only wait for the lookup table to be copied.
+   */
+  public void snapshot() throws IOException {
+    synchronized (snapshotLock) {
+      UserRecordSnapshot.State state = capture();
+      if (state == null) {
+        return;
+      }
+      long start = System.nanoTime();
+      UserRecordSnapshot.write(snapshotDirectory, state);
+      LOGGER.info("User record store snapshot written in {} ms: {} users",
+          (System.nanoTime() - start) / 1_000_000, state.size);
+    }
+  }
+
+  /**
+   * Captures the store and starts a new change log.
+   * @return the content of the snapshot, null if the store has no snapshot directory
+   */
+  private synchronized UserRecordSnapshot.State capture() throws IOException {
+    if (changeLog == null) {
+      return null;
+    }
+    UserRecordSnapshot.State state = new UserRecordSnapshot.State();
+    state.chunkSize = chunkSize;
+    state.chunks = chunks;
+    state.lastChunkLength = chunks.length == 0 ? 0
+        : Math.min(position, chunks[chunks.length - 1].capacity());
+    state.size = size;
+    state.slots = slots.clone();
+    state.maxId = maxId;
+    state.logGeneration = changeLog.getGeneration() + 1;
+    changeLog.close();
+    changeLog = new UserRecordSnapshot.ChangeLog(snapshotDirectory, state.logGeneration);
+    return state;
+  }
+
+  /**
+   * Copies the restored users missing from the database. Users registered since have higher
+   * ids, the id sequence having been moved past the restored ones.
+   * @param databaseMaxId - highest id of the database on startup
+   * @param restoredMaxId - highest id of the restored users
+   */
+  private void copyToDatabase(long databaseMaxId, long restoredMaxId) {
+    long start = System.nanoTime();
+    long copied = 0;
+    List<User> batch = new ArrayList<>(page.getPageSize());
+    try {
+      for (long slot : slots) {
+        if (slot == 0) {
+          continue;
+        }
+        User user = UserRecordCodec.decode(chunk(slot), offset(slot));
+        if (user.getId() != null && user.getId() > databaseMaxId
+            && user.getId() <= restoredMaxId) {
+          batch.add(user);
+        }
+        if (batch.size() == page.getPageSize()) {
+          userRepository.insertUsers(batch);
+          copied += batch.size();
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        userRepository.insertUsers(batch);
+        copied += batch.size();
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Copy of the restored users to the database failed after " + copied, e);
+      return;
+    }
+    LOGGER.info("{} restored users copied to the database in {} ms", copied,
+        (System.nanoTime() - start) / 1_000_000);
+    if (userSearchIndex != null) {
+      userSearchIndex.afterSingletonsInstantiated();
+    }
+  }
+
+  /**
+   * Adds or replaces a user.
+   * @param user - user with an id
+   */
+  public void put(User user) {
+    if (!enabled || user.getUserName() == null) {
+      return;
+    }
+    byte[][] texts = UserRecordCodec.texts(user);
+    int recordSize = UserRecordCodec.size(texts);
+    if (recordSize > chunkSize) {
+      throw new IllegalArgumentException("User record of " + recordSize + " bytes");
+    }
+    synchronized (this) {
+      ByteBuffer[] current = chunks;
+      if (current.length == 0 || position + recordSize > chunkSize) {
+        current = Arrays.copyOf(current, current.length + 1);
+        current[current.length - 1] = allocate();
+        chunks = current;
+        position = 0;
+      }
+      ByteBuffer chunk = current[current.length - 1];
+      int offset = position;
+      position = UserRecordCodec.encode(user, texts, chunk, offset);
+      long address = (long) (current.length - 1) * chunkSize + offset;
+      int hash = chunk.getInt(offset + UserRecordCodec.HASH);
+      if (insert(slots, hash, address, User.normalizeUserName(user.getUserName()))) {
+        size++;
+        if (size > slots.length / 4 * 3) {
+          slots = rehash(slots, slots.length * 2);
+        }
+      }
+      if (user.getId() != null) {
+        maxId = Math.max(maxId, user.getId());
+      }
+      if (changeLog != null) {
+        try {
+          changeLog.append(chunk, offset, position - offset);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Publishes a record, replacing the one of the same username.
+   * @return true if the username is new
+   */
+  private boolean insert(long[] table, int hash, long address, String userName) {
+    int mask = table.length - 1;
+    long tag = tag(hash);
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      long slot = (long) SLOTS.getAcquire(table, i);
+      if (slot == 0 || (userName != null && (slot & ~ADDRESS_MASK) == tag
+          && UserRecordCodec.hasUserName(chunk(slot), offset(slot), userName))) {
+        SLOTS.setRelease(table, i, tag | (address + 1));
+        return slot == 0;
+      }
+    }
+  }
+
+  /**
+   * Copies the table into a larger one, to be published once complete.
+   */
+  private long[] rehash(long[] table, int capacity) {
+    long[] larger = new long[capacity];
+    for (long slot : table) {
+      if (slot != 0) {
+        int hash = chunk(slot).getInt(offset(slot) + UserRecordCodec.HASH);
+        insert(larger, hash, (slot & ADDRESS_MASK) - 1, null);
+      }
+    }
+    return larger;
+  }
+
+  /**
+   * Gets the user with the given username.
+   * @param userName - user's username, in any case
+   * @return a detached copy of the user, empty if it is not in the store
+   */
+  public Optional<User> get(String userName) {
+    if (userName == null) {
+      return Optional.empty();
+    }
+    String key = User.normalizeUserName(userName);
+    int hash = UserRecordCodec.hash(key);
+    long tag = tag(hash);
+    long[] table = slots;
+    int mask = table.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      long slot = (long) SLOTS.getAcquire(table, i);
+      if (slot == 0) {
+        return Optional.empty();
+      }
+      if ((slot & ~ADDRESS_MASK) == tag) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        if (UserRecordCodec.hasUserName(chunk, offset, key)) {
+          return Optional.of(UserRecordCodec.decode(chunk, offset));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tells whether a username is in the store.
+   * @param userName - user's username, in any case
+   * @return true if a user has this username
+   */
+  public boolean contains(String userName) {
+    return get(userName).isPresent();
+  }
+
+  /**
+   * Gets the number of users.
+   * @return number of distinct usernames stored
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the memory taken by the records, outside of the heap.
+   * @return bytes allocated or mapped for the chunks
+   */
+  public long usedBytes() {
+    return (long) chunks.length * chunkSize;
+  }
+
+  private static long tag(int hash) {
+    return ((long) (hash >>> 8)) << ADDRESS_BITS;
+  }
+
+  private ByteBuffer chunk(long slot) {
+    return chunks[(int) (((slot & ADDRESS_MASK) - 1) / chunkSize)];
+  }
+
+  private int offset(long slot) {
+    return (int) (((slot & ADDRESS_MASK) - 1) % chunkSize);
+  }
+
+  private ByteBuffer allocate() {
+    if (file == null) {
+      return ByteBuffer.allocateDirect(chunkSize);
+    }
+    try {
+      if (channel == null) {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      }
+      return channel.map(FileChannel.MapMode.READ_WRITE, (long) mappedChunks++ * chunkSize,
+          chunkSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Saves a last snapshot on shutdown, so that the next start has no change log to replay.
+   */
+  @Override
+  public void destroy() throws IOException {
+    if (snapshots != null) {
+      snapshots.shutdown();
+      snapshot();
+    }
+    synchronized (this) {
+      if (changeLog != null) {
+        changeLog.close();
+        changeLog = null;
+      }
+    }
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    if (!enabled) {
+      return;
+    }
+    Gauge.builder("user.record.store.users", this, UserRecordStore::size)
+        .description("Users of the record store")
+        .register(registry);
+    Gauge.builder("user.record.store.bytes", this, UserRecordStore::usedBytes)
+        .description("Memory allocated for the records of the record store")
+        .baseUnit("bytes")
+        .register(registry);
+  }
+}
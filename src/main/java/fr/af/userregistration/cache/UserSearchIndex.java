@@ -0,0 +1,420 @@
+package fr.af.userregistration.cache;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory prefix index of the users by username, first name and last name.
+ * Searches ignore case and accents; a query matches the username, any word of the username,
+ * of the first name or of the last name, or the full name ("first last").
+ * Users are ranked by matching term in alphabetical order, so exact matches come first,
+ * then by id.
+ *
+ * The users of the database are loaded into a sorted {@link TermSegment} before the
+ * application accepts requests. The users registered afterwards go to a concurrent sorted set,
+ * merged into a new segment by a background thread every
+ * user-registration.search.merge-threshold terms. Searches never lock.
+ */
+@Component
+public class UserSearchIndex implements SmartInitializingSingleton {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserSearchIndex.class);
+
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+  private static final Pattern SPACES = Pattern.compile("\\s+");
+
+  private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private static final Comparator<Posting> ORDER = (first, second) -> {
+    int comparison = Arrays.compareUnsigned(first.term, second.term);
+    return comparison != 0 ? comparison : Long.compare(first.id, second.id);
+  };
+
+  private final UserRepository userRepository;
+
+  private final Pageable page;
+
+  private final int mergeThreshold;
+
+  private final Object lock = new Object();
+
+  private volatile State state = new State(TermSegment.EMPTY, newDelta(), newDelta());
+
+  /**
+   * Number of postings of the current delta, guarded by the lock.
+   */
+  private int deltaSize;
+
+  private boolean merging;
+
+  public UserSearchIndex(UserRepository userRepository, UserRegistrationProperties properties) {
+    this.userRepository = userRepository;
+    this.page = PageRequest.of(0, properties.getExport().getPageSize());
+    this.mergeThreshold = properties.getSearch().getMergeThreshold();
+  }
+
+  private static NavigableSet<Posting> newDelta() {
+    return new ConcurrentSkipListSet<>(ORDER);
+  }
+
+  /**
+   * Loads the users of the database once every bean is ready, before the web server starts.
+   * It is called again, by one thread at a time, when users are copied back to the database,
+   * see {@link UserRecordStore}.
+   */
+  @Override
+  public synchronized void afterSingletonsInstantiated() {
+    long start = System.nanoTime();
+    TermSegment.Builder builder = new TermSegment.Builder(
+        (int) Math.min(Integer.MAX_VALUE / 8, userRepository.count() * 4));
+    long afterId = 0;
+    List<User> users = userRepository.findUsersAfter(afterId, Long.MAX_VALUE, page);
+    while (!users.isEmpty()) {
+      users.forEach(user -> terms(user).forEach(term -> builder.add(term, user.getId())));
+      afterId = users.get(users.size() - 1).getId();
+      users = users.size() < page.getPageSize() ? List.of()
+          : userRepository.findUsersAfter(afterId, Long.MAX_VALUE, page);
+    }
+    load(builder);
+    LOGGER.info("User search index loaded in {} ms: {} terms",
+        (System.nanoTime() - start) / 1_000_000, state.base.size());
+  }
+
+  /**
+   * Replaces the indexed users, at startup.
+   * @param users - users with an id
+   */
+  public void load(Iterable<User> users) {
+    TermSegment.Builder builder = new TermSegment.Builder(1024);
+    users.forEach(user -> terms(user).forEach(term -> builder.add(term, user.getId())));
+    load(builder);
+  }
+
+  private void load(TermSegment.Builder builder) {
+    TermSegment base = builder.build();
+    synchronized (lock) {
+      state = new State(base, state.frozen, state.delta);
+    }
+  }
+
+  /**
+   * Adds a registered user.
+   * @param user - user with an id
+   */
+  public void add(User user) {
+    if (user.getId() == null) {
+      return;
+    }
+    Set<String> terms = terms(user);
+    synchronized (lock) {
+      terms.forEach(term -> state.delta.add(
+          new Posting(term.getBytes(StandardCharsets.UTF_8), user.getId())));
+      deltaSize += terms.size();
+      if (deltaSize >= mergeThreshold && !merging) {
+        merging = true;
+        deltaSize = 0;
+        state = new State(state.base, state.delta, newDelta());
+        Thread merge = new Thread(this::merge, "user-search-merge");
+        merge.setDaemon(true);
+        merge.start();
+      }
+    }
+  }
+
+  /**
+   * Merges the frozen delta into a new segment. The segment is installed only if the base it
+   * was merged with is still current: when the users were reloaded meanwhile, the frozen delta
+   * is merged again into the reloaded base. If the merge fails, the frozen postings go back to
+   * the delta, to be merged with the next ones.
+   */
+  private void merge() {
+    boolean merged = false;
+    try {
+      State current = state;
+      TermSegment base = current.base;
+      while (!merged) {
+        TermSegment segment = merge(base, current.frozen);
+        synchronized (lock) {
+          if (state.base == base) {
+            state = new State(segment, newDelta(), state.delta);
+            merged = true;
+          } else {
+            base = state.base;
+          }
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      LOGGER.error("User search index merge failed", e);
+      throw e;
+    } finally {
+      synchronized (lock) {
+        if (!merged) {
+          state.delta.addAll(state.frozen);
+          deltaSize += state.frozen.size();
+          state = new State(state.base, newDelta(), state.delta);
+        }
+        merging = false;
+      }
+    }
+  }
+
+  /**
+   * Merges sorted postings into a copy of a segment, in one pass since both are sorted.
+   * The writer drops the postings already in the segment, e.g. after a reload.
+   */
+  private static TermSegment merge(TermSegment segment, NavigableSet<Posting> postings) {
+    TermSegment.Writer writer = new TermSegment.Writer(segment.size() + postings.size(), 0, 0);
+    TermSegment.Cursor base = segment.all();
+    Iterator<Posting> frozen = postings.iterator();
+    boolean hasBase = base.next();
+    Posting posting = frozen.hasNext() ? frozen.next() : null;
+    while (hasBase || posting != null) {
+      if (posting == null || (hasBase && compare(base.term(), base.id(), posting) <= 0)) {
+        writer.append(base.term(), 0, base.term().length, base.id());
+        hasBase = base.next();
+      } else {
+        writer.append(posting.term, 0, posting.term.length, posting.id);
+        posting = frozen.hasNext() ? frozen.next() : null;
+      }
+    }
+    return writer.finish();
+  }
+
+  private static int compare(byte[] term, long id, Posting posting) {
+    int comparison = Arrays.compareUnsigned(term, posting.term);
+    return comparison != 0 ? comparison : Long.compare(id, posting.id);
+  }
+
+  /**
+   * Searches users by prefix.
+   * @param query - beginning of a username, of a word of a name, or of a full name
+   * @param offset - number of matching users to skip
+   * @param limit - maximum number of users returned
+   * @return ids of the matching users, best ranked first
+   */
+  public List<Long> search(String query, int offset, int limit) {
+    String normalized = normalize(query);
+    if (normalized.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    byte[] prefix = normalized.getBytes(StandardCharsets.UTF_8);
+    State current = state;
+    Source[] sources = {
+        new SegmentSource(current.base.startingWith(prefix)),
+        new DeltaSource(current.frozen, prefix),
+        new DeltaSource(current.delta, prefix)};
+    Set<Long> seen = new HashSet<>();
+    List<Long> ids = new ArrayList<>(limit);
+    Source next;
+    while ((next = first(sources)) != null) {
+      long id = next.id();
+      next.advance();
+      if (seen.add(id) && seen.size() > offset) {
+        ids.add(id);
+        if (ids.size() == limit) {
+          break;
+        }
+      }
+    }
+    return ids;
+  }
+
+  private static Source first(Source[] sources) {
+    Source first = null;
+    for (Source source : sources) {
+      if (source.hasCurrent() && (first == null || source.compareTo(first) < 0)) {
+        first = source;
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Lower cases and removes accents, keeping single spaces between words.
+   * @param text - text to normalize
+   * @return normalized text, empty if null
+   */
+  static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String withoutMarks = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+        .replaceAll("");
+    return SPACES.matcher(withoutMarks.toLowerCase(Locale.ROOT).trim())
+        .replaceAll(" ");
+  }
+
+  /**
+   * Gets the terms indexing a user.
+   */
+  static Set<String> terms(User user) {
+    Set<String> terms = new LinkedHashSet<>();
+    String userName = normalize(user.getUserName());
+    if (!userName.isEmpty()) {
+      terms.add(userName);
+    }
+    words(userName, terms);
+    List<String> firstNames = words(normalize(user.getFirstName()), terms);
+    List<String> lastNames = words(normalize(user.getLastName()), terms);
+    if (!firstNames.isEmpty() && !lastNames.isEmpty()) {
+      terms.add(String.join(" ", firstNames) + " " + String.join(" ", lastNames));
+    }
+    return terms;
+  }
+
+  private static List<String> words(String text, Set<String> terms) {
+    List<String> words = new ArrayList<>();
+    for (String word : WORD_SEPARATORS.split(text)) {
+      if (!word.isEmpty()) {
+        words.add(word);
+        terms.add(word);
+      }
+    }
+    return words;
+  }
+
+  private static final class State {
+
+    private final TermSegment base;
+
+    /**
+     * Delta being merged into a new base, still searched until the merge is done.
+     */
+    private final NavigableSet<Posting> frozen;
+
+    private final NavigableSet<Posting> delta;
+
+    private State(TermSegment base, NavigableSet<Posting> frozen, NavigableSet<Posting> delta) {
+      this.base = base;
+      this.frozen = frozen;
+      this.delta = delta;
+    }
+  }
+
+  private static final class Posting {
+
+    private final byte[] term;
+
+    private final long id;
+
+    private Posting(byte[] term, long id) {
+      this.term = term;
+      this.id = id;
+    }
+  }
+
+  /**
+   * Sorted postings of one part of the index, merged by the searches.
+   */
+  private abstract static class Source {
+
+    abstract boolean hasCurrent();
+
+    abstract byte[] term();
+
+    abstract long id();
+
+    abstract void advance();
+
+    int compareTo(Source other) {
+      int comparison = Arrays.compareUnsigned(term(), other.term());
+      return comparison != 0 ? comparison : Long.compare(id(), other.id());
+    }
+  }
+
+  private static final class SegmentSource extends Source {
+
+    private final TermSegment.Cursor cursor;
+
+    private boolean current;
+
+    private SegmentSource(TermSegment.Cursor cursor) {
+      this.cursor = cursor;
+      this.current = cursor.next();
+    }
+
+    @Override
+    boolean hasCurrent() {
+      return current;
+    }
+
+    @Override
+    byte[] term() {
+      return cursor.term();
+    }
+
+    @Override
+    long id() {
+      return cursor.id();
+    }
+
+    @Override
+    void advance() {
+      current = cursor.next();
+    }
+  }
+
+  private static final class DeltaSource extends Source {
+
+    private final Iterator<Posting> postings;
+
+    private final byte[] prefix;
+
+    private Posting current;
+
+    private DeltaSource(NavigableSet<Posting> delta, byte[] prefix) {
+      this.postings = delta.tailSet(new Posting(prefix, Long.MIN_VALUE), true).iterator();
+      this.prefix = prefix;
+      advance();
+    }
+
+    @Override
+    boolean hasCurrent() {
+      return current != null;
+    }
+
+    @Override
+    byte[] term() {
+      return current.term;
+    }
+
+    @Override
+    long id() {
+      return current.id;
+    }
+
+    @Override
+    void advance() {
+      current = null;
+      if (postings.hasNext()) {
+        Posting posting = postings.next();
+        if (posting.term.length >= prefix.length
+            && Arrays.equals(posting.term, 0, prefix.length, prefix, 0, prefix.length)) {
+          current = posting;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package fr.af.userregistration.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+
+/**
+ * JSON bodies of the answers to non-valid requests, {"field": "message", ...}.
+ * The body of each field and constraint message is serialized once then reused as is: a request
+ * rejected for a single violation, the only one reported in fail-fast mode, is answered with a
+ * cached byte array. The bodies of several violations are joined, the last one of a field
+ * winning.
+ * A message holding the rejected value would be cached once per value, so the cache is bounded:
+ * beyond it the bodies are serialized on each request.
+ */
+@Component
+public class ValidationErrorCache {
+
+  private static final int MAX_FIELDS = 256;
+
+  private static final int MAX_MESSAGES_PER_FIELD = 16;
+
+  private final ObjectMapper objectMapper;
+
+  private final Map<String, Map<String, byte[]>> bodies = new ConcurrentHashMap<>();
+
+  public ValidationErrorCache(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Gets the name of the field of a violation, the name of the object for a class constraint.
+   * @param error - violation
+   * @return name of the field
+   */
+  public static String field(ObjectError error) {
+    return error instanceof FieldError ? ((FieldError) error).getField() : error.getObjectName();
+  }
+
+  /**
+   * Gets the body of the answer to a request rejected for some violations.
+   * @param errors - violations, at least one
+   * @return JSON object of the message of each field
+   */
+  public byte[] body(List<ObjectError> errors) {
+    if (errors.size() == 1) {
+      return body(errors.get(0));
+    }
+    Map<String, byte[]> fields = new LinkedHashMap<>();
+    errors.forEach(error -> fields.put(field(error), body(error)));
+    ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    joined.write('{');
+    for (byte[] field : fields.values()) {
+      if (joined.size() > 1) {
+        joined.write(',');
+      }
+      // without the braces of its own object
+      joined.write(field, 1, field.length - 2);
+    }
+    joined.write('}');
+    return joined.toByteArray();
+  }
+
+  private byte[] body(ObjectError error) {
+    String field = field(error);
+    String message = error.getDefaultMessage();
+    Map<String, byte[]> messages = bodies.get(field);
+    if (messages == null && bodies.size() < MAX_FIELDS) {
+      messages = bodies.computeIfAbsent(field, name -> new ConcurrentHashMap<>());
+    }
+    byte[] body = messages == null || message == null ? null : messages.get(message);
+    if (body == null) {
+      body = serialize(field, message);
+      if (messages != null && message != null && messages.size() < MAX_MESSAGES_PER_FIELD) {
+        messages.putIfAbsent(message, body);
+      }
+    }
+    return body;
+  }
+
+  private byte[] serialize(String field, String message) {
+    try {
+      return objectMapper.writeValueAsBytes(Collections.singletonMap(field, message));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot serialize the violation of " + field, e);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package fr.af.userregistration.config;
+
+import java.util.concurrent.Callable;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Gives the streamed user exports their own timeout, user-registration.export.timeout: they
+ * last as long as there are users to write, while the other asynchronous requests keep
+ * spring.mvc.async.request-timeout.
+ */
+@Configuration
+@Profile("!reactive")
+public class ExportTimeoutConfig implements WebMvcConfigurer {
+
+  private static final String EXPORT_ATTRIBUTE = ExportTimeoutConfig.class.getName() + ".EXPORT";
+
+  private final long timeout;
+
+  public ExportTimeoutConfig(UserRegistrationProperties properties) {
+    this.timeout = properties.getExport().getTimeout().toMillis();
+  }
+
+  /**
+   * Marks a request as an export, before its response is streamed.
+   * @param request - request of the export
+   */
+  public static void markExport(WebRequest request) {
+    request.setAttribute(EXPORT_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+      @Override
+      public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        if (request instanceof AsyncWebRequest
+            && request.getAttribute(EXPORT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+          ((AsyncWebRequest) request).setTimeout(timeout);
+        }
+      }
+    });
+  }
+}
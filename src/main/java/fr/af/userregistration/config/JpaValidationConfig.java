@@ -0,0 +1,28 @@
+package fr.af.userregistration.config;
+
+import java.util.Collections;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaValidationConfig {
+
+  private static final String INTEGRATOR_PROVIDER = "hibernate.integrator_provider";
+
+  /**
+   * Registers {@link ValidatedEntityIntegrator} unless
+   * user-registration.validation.skip-validated-entities is false.
+   */
+  @Bean
+  public HibernatePropertiesCustomizer validatedEntityCustomizer(
+      UserRegistrationProperties properties) {
+    return hibernateProperties -> {
+      if (properties.getValidation().isSkipValidatedEntities()) {
+        hibernateProperties.put(INTEGRATOR_PROVIDER,
+            (IntegratorProvider) () -> Collections.singletonList(new ValidatedEntityIntegrator()));
+      }
+    };
+  }
+}
@@ -1,78 +1,152 @@
 package fr.af.userregistration.config;
 
-import java.util.Arrays;
-import java.util.List;
-import org.aspectj.lang.JoinPoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.annotation.AfterReturning;
-import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.util.StopWatch;
 
+/**
+ * Times every call to the services into the "user.service" timer, tagged by class, method,
+ * outcome and exception, with p50/p95/p99 percentiles and histogram buckets.
+ * Also traces the calls: execution time at INFO, arguments and results at DEBUG.
+ * Only a sample of the calls is traced, see {@link UserRegistrationProperties.Tracing}.
+ * The logger writes through an asynchronous appender, see log4j2-spring.xml.
+ */
 @Aspect
 @Configuration
 public class LoggingAspect {
 
-  private static Logger LOGGER = LoggerFactory.getLogger(LoggingAspect.class);
-  private static final String separator = "====================";
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoggingAspect.class);
 
-  @Around("execution(* fr.af.userregistration.service.implementation.*.*(*))")
-  public Object profileAllMethods(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
-    MethodSignature methodSignature = (MethodSignature) proceedingJoinPoint.getSignature();
+  private static final String TIMER = "user.service";
 
-    String className = methodSignature.getDeclaringType().getSimpleName();
-    String methodName = methodSignature.getName();
+  private static final String SUCCESS = "success";
+
+  private static final String ERROR = "error";
+
+  private static final String NONE = "none";
+
+  private final UserRegistrationProperties.Tracing tracing;
 
-    final StopWatch stopWatch = new StopWatch();
+  private final MeterRegistry meterRegistry;
 
-    stopWatch.start();
-    Object result = proceedingJoinPoint.proceed();
-    stopWatch.stop();
+  /**
+   * Timer of the successful calls of each method, the most frequent outcome.
+   */
+  private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
 
-    LOGGER.info("Execution time of " + className + "." + methodName + " :: "
-        + stopWatch.getTotalTimeMillis() + " ms");
+  /**
+   * Timer of the failed calls of each method, by exception type.
+   */
+  private final Map<Method, Map<Class<?>, Timer>> errorTimers = new ConcurrentHashMap<>();
 
-    LOGGER.info(separator);
+  /**
+   * Sampling rate of each traced method, resolved on its first call.
+   */
+  private final Map<Method, Double> samplingRates = new ConcurrentHashMap<>();
 
-    return result;
+  public LoggingAspect(UserRegistrationProperties properties, MeterRegistry meterRegistry) {
+    this.tracing = properties.getTracing();
+    this.meterRegistry = meterRegistry;
   }
 
-  @Pointcut("execution(* fr.af.userregistration.service.implementation.*.*(*))")
+  /**
+   * Every service method, whatever its arguments.
+   * Reactive methods are left out: they return before the work is done, so their timing would
+   * only measure the assembly of the pipeline. So are the lifecycle callbacks the container
+   * calls through the proxy, which are not service calls.
+   * The same beans were already proxied, so proxy-config.json is unchanged.
+   */
+  @Pointcut("execution(* fr.af.userregistration.service.implementation.*.*(..))"
+      + " && !execution(org.reactivestreams.Publisher+ *(..))"
+      + " && !execution(* org.springframework.context.SmartLifecycle.*(..))"
+      + " && !execution(* org.springframework.beans.factory.DisposableBean.*(..))")
   private void businessService() {
   }
 
-  @Before("businessService()")
-  public void doBeforeTask(JoinPoint joinPoint) {
-    if (LOGGER.isInfoEnabled()) {
-      LOGGER.info(joinPoint.getSignature().toShortString());
-      List<Object> args = Arrays.asList(joinPoint.getArgs());
-      if (!args.isEmpty()) {
-        args.forEach(
-            arg -> LOGGER.info("[IN " + arg.getClass().getSimpleName() + "]: " + arg.toString()));
-      }
+  @Around("businessService()")
+  public Object profileAllMethods(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+    MethodSignature methodSignature = (MethodSignature) proceedingJoinPoint.getSignature();
+    Method method = methodSignature.getMethod();
+    long start = System.nanoTime();
+    try {
+      Object result = trace(proceedingJoinPoint, methodSignature);
+      successTimers.computeIfAbsent(method, m -> timer(m, SUCCESS, NONE))
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return result;
+    } catch (Throwable error) {
+      errorTimers.computeIfAbsent(method, m -> new ConcurrentHashMap<>())
+          .computeIfAbsent(error.getClass(), type -> timer(method, ERROR, type.getSimpleName()))
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      throw error;
     }
   }
 
-  @AfterReturning(pointcut = "businessService()", returning = "retVal")
-  public void doAfterReturn(Object retVal) {
-    if (retVal != null) {
-      LOGGER.info("[OUT " + retVal.getClass().getSimpleName() + "]: " + retVal.toString());
-    }
-    LOGGER.info(separator);
+  private Timer timer(Method method, String outcome, String exception) {
+    return Timer.builder(TIMER)
+        .description("Execution time of the service methods")
+        .tag("class", method.getDeclaringClass().getSimpleName())
+        .tag("method", method.getName())
+        .tag("outcome", outcome)
+        .tag("exception", exception)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
   }
 
-  @AfterThrowing(pointcut = "businessService()", throwing = "error")
-  public void doAfterReturn(Throwable error) {
-    if (error != null) {
-      LOGGER.error(error.getClass().getSimpleName());
+  private Object trace(ProceedingJoinPoint proceedingJoinPoint, MethodSignature methodSignature)
+      throws Throwable {
+    if (!LOGGER.isInfoEnabled() || !isSampled(methodSignature.getMethod())) {
+      return proceedingJoinPoint.proceed();
     }
-    LOGGER.info(separator);
+
+    String className = methodSignature.getDeclaringType().getSimpleName();
+    String methodName = methodSignature.getName();
+    if (LOGGER.isDebugEnabled()) {
+      for (Object arg : proceedingJoinPoint.getArgs()) {
+        LOGGER.debug("{}.{} [IN {}]: {}", className, methodName,
+            arg == null ? null : arg.getClass().getSimpleName(), arg);
+      }
+    }
+
+    long start = System.nanoTime();
+    try {
+      Object result = proceedingJoinPoint.proceed();
+      LOGGER.info("Execution time of {}.{} :: {} ms", className, methodName, elapsedMillis(start));
+      if (result != null && LOGGER.isDebugEnabled()) {
+        LOGGER.debug("{}.{} [OUT {}]: {}", className, methodName,
+            result.getClass().getSimpleName(), result);
+      }
+      return result;
+    } catch (Throwable error) {
+      LOGGER.error("{}.{} failed after {} ms: {}", className, methodName, elapsedMillis(start),
+          error.getClass().getSimpleName());
+      throw error;
+    }
+  }
+
+  private static long elapsedMillis(long start) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  private boolean isSampled(Method method) {
+    double rate = samplingRates.computeIfAbsent(method, this::samplingRate);
+    return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  private double samplingRate(Method method) {
+    String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    return tracing.getSamplingRates().getOrDefault(name, tracing.getSamplingRate());
   }
 }
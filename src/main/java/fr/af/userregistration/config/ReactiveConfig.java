@@ -0,0 +1,52 @@
+package fr.af.userregistration.config;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Non-blocking stack of the "reactive" profile: WebFlux on Netty, and R2DBC on the
+ * spring.datasource database, whose schema is still created by Hibernate.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+  private static final String H2_JDBC_PREFIX = "jdbc:h2:";
+
+  /**
+   * Netty is preferred to Tomcat, which is on the classpath for the servlet stack.
+   */
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  /**
+   * The connection factory is not exposed as a bean: its presence would switch off the JDBC
+   * DataSource auto-configuration, which JPA still needs.
+   */
+  @Bean
+  public DatabaseClient databaseClient(DataSourceProperties dataSourceProperties) {
+    return DatabaseClient.create(connectionFactory(dataSourceProperties));
+  }
+
+  private static ConnectionFactory connectionFactory(DataSourceProperties dataSourceProperties) {
+    String url = dataSourceProperties.determineUrl();
+    if (url == null || !url.startsWith(H2_JDBC_PREFIX)) {
+      throw new IllegalStateException(
+          "The reactive profile requires an H2 database, found " + url);
+    }
+    return new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+        .url(url.substring(H2_JDBC_PREFIX.length()))
+        .username(dataSourceProperties.determineUsername())
+        .password(dataSourceProperties.determinePassword())
+        .build());
+  }
+}
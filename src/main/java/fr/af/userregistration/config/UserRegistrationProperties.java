@@ -0,0 +1,722 @@
+package fr.af.userregistration.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Tunable settings of the registration service, bound from the {@code user-registration.*}
+ * properties.
+ */
+@ConfigurationProperties(prefix = "user-registration")
+public class UserRegistrationProperties {
+
+  private final Batch batch = new Batch();
+
+  private final Cache cache = new Cache();
+
+  private final Validation validation = new Validation();
+
+  private final Tracing tracing = new Tracing();
+
+  private final Execution execution = new Execution();
+
+  private final Export export = new Export();
+
+  private final Availability availability = new Availability();
+
+  private final Idempotency idempotency = new Idempotency();
+
+  private final WriteBehind writeBehind = new WriteBehind();
+
+  private final Search search = new Search();
+
+  private final RecordStore recordStore = new RecordStore();
+
+  private final Persistence persistence = new Persistence();
+
+  public Batch getBatch() {
+    return batch;
+  }
+
+  public Cache getCache() {
+    return cache;
+  }
+
+  public Validation getValidation() {
+    return validation;
+  }
+
+  public Tracing getTracing() {
+    return tracing;
+  }
+
+  public Execution getExecution() {
+    return execution;
+  }
+
+  public Export getExport() {
+    return export;
+  }
+
+  public Availability getAvailability() {
+    return availability;
+  }
+
+  public Idempotency getIdempotency() {
+    return idempotency;
+  }
+
+  public WriteBehind getWriteBehind() {
+    return writeBehind;
+  }
+
+  public Search getSearch() {
+    return search;
+  }
+
+  public RecordStore getRecordStore() {
+    return recordStore;
+  }
+
+  public Persistence getPersistence() {
+    return persistence;
+  }
+
+  /**
+   * Settings of the bulk registration endpoint.
+   */
+  public static class Batch {
+
+    /**
+     * Number of users persisted (and flushed) together in one transaction.
+     * Should be a multiple of hibernate.jdbc.batch_size.
+     */
+    private int size = 500;
+
+    public int getSize() {
+      return size;
+    }
+
+    public void setSize(int size) {
+      this.size = size;
+    }
+  }
+
+  /**
+   * Settings of the username lookup cache.
+   */
+  public static class Cache {
+
+    /**
+     * Maximum number of usernames kept, least valuable entries are evicted first.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long an existing user stays cached.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long an unknown username stays cached.
+     * Kept short since the username may be registered at any time on another node.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(5);
+
+    public long getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+
+    public Duration getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+      this.ttl = ttl;
+    }
+
+    public Duration getNegativeTtl() {
+      return negativeTtl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+      this.negativeTtl = negativeTtl;
+    }
+  }
+
+  /**
+   * Settings of bean validation.
+   */
+  public static class Validation {
+
+    /**
+     * Skips the pre-insert validation of users built from an already validated DTO.
+     */
+    private boolean skipValidatedEntities = true;
+
+    /**
+     * Stops the validation of a request at its first constraint violation, which is then the
+     * only one reported.
+     */
+    private boolean failFast = false;
+
+    public boolean isSkipValidatedEntities() {
+      return skipValidatedEntities;
+    }
+
+    public void setSkipValidatedEntities(boolean skipValidatedEntities) {
+      this.skipValidatedEntities = skipValidatedEntities;
+    }
+
+    public boolean isFailFast() {
+      return failFast;
+    }
+
+    public void setFailFast(boolean failFast) {
+      this.failFast = failFast;
+    }
+  }
+
+  /**
+   * Settings of the service tracing done by {@link LoggingAspect}.
+   */
+  public static class Tracing {
+
+    /**
+     * Share of the calls which are traced, from 0 (none) to 1 (all).
+     */
+    private double samplingRate = 1.0;
+
+    /**
+     * Sampling rate of specific methods, by "SimpleClassName.methodName".
+     * Use brackets in properties files: sampling-rates[UserServiceImpl.createUser]=0.1
+     */
+    private Map<String, Double> samplingRates = new HashMap<>();
+
+    public double getSamplingRate() {
+      return samplingRate;
+    }
+
+    public void setSamplingRate(double samplingRate) {
+      this.samplingRate = samplingRate;
+    }
+
+    public Map<String, Double> getSamplingRates() {
+      return samplingRates;
+    }
+
+    public void setSamplingRates(Map<String, Double> samplingRates) {
+      this.samplingRates = samplingRates;
+    }
+  }
+
+  /**
+   * Settings of the threads running the requests.
+   */
+  public static class Execution {
+
+    /**
+     * PLATFORM - a pooled platform thread per request (Tomcat default)
+     * VIRTUAL - a new virtual thread per request and per async task, requires Java 21+
+     */
+    public enum Mode {
+      PLATFORM, VIRTUAL
+    }
+
+    private Mode mode = Mode.PLATFORM;
+
+    public Mode getMode() {
+      return mode;
+    }
+
+    public void setMode(Mode mode) {
+      this.mode = mode;
+    }
+  }
+
+  /**
+   * Settings of the user export.
+   */
+  public static class Export {
+
+    /**
+     * Number of users read from the database at once.
+     * Memory used by an export is bounded by one page, whatever the number of users.
+     */
+    private int pageSize = 1000;
+
+    /**
+     * Time left between the end of an export and the current time of the database.
+     * A user is only exported once it has been registered for this long, so it must exceed the
+     * longest registration transaction: a user committed later would be missed by incremental
+     * exports.
+     */
+    private Duration commitLag = Duration.ofMinutes(1);
+
+    /**
+     * Time an export may take, the other asynchronous requests keep
+     * spring.mvc.async.request-timeout.
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    public int getPageSize() {
+      return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+    }
+
+    public Duration getCommitLag() {
+      return commitLag;
+    }
+
+    public void setCommitLag(Duration commitLag) {
+      this.commitLag = commitLag;
+    }
+
+    public Duration getTimeout() {
+      return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+      this.timeout = timeout;
+    }
+  }
+
+  /**
+   * Settings of the username availability filter.
+   */
+  public static class Availability {
+
+    /**
+     * Number of usernames the filter is sized for.
+     * Beyond it, the false positive rate, so the share of checks reaching the database, grows.
+     */
+    private long expectedUsers = 1_000_000;
+
+    /**
+     * Share of unknown usernames the filter reports as possibly taken.
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * File where the filter is saved on shutdown and read back on startup, none if empty.
+     */
+    private String snapshot;
+
+    public long getExpectedUsers() {
+      return expectedUsers;
+    }
+
+    public void setExpectedUsers(long expectedUsers) {
+      this.expectedUsers = expectedUsers;
+    }
+
+    public double getFalsePositiveRate() {
+      return falsePositiveRate;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+      this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public String getSnapshot() {
+      return snapshot;
+    }
+
+    public void setSnapshot(String snapshot) {
+      this.snapshot = snapshot;
+    }
+  }
+
+  /**
+   * Settings of the Idempotency-Key support of the registration endpoint.
+   */
+  public static class Idempotency {
+
+    /**
+     * Maximum number of request keys remembered in memory.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * How long the outcome of a request is replayed to its retries.
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Also stores the outcomes in the idempotency_key table, so that they survive restarts
+     * and are shared by the instances using the same database.
+     */
+    private boolean persistent = false;
+
+    public long getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+
+    public Duration getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+      this.ttl = ttl;
+    }
+
+    public boolean isPersistent() {
+      return persistent;
+    }
+
+    public void setPersistent(boolean persistent) {
+      this.persistent = persistent;
+    }
+  }
+
+  /**
+   * Settings of the asynchronous registration endpoint.
+   */
+  public static class WriteBehind {
+
+    /**
+     * Queues the users and saves them by batches from a dedicated writer.
+     * When disabled, asynchronous registrations are saved before the response, one by one.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of users waiting to be saved, registrations are rejected with a 503 beyond.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Maximum number of users saved in one transaction.
+     */
+    private int maxBatchSize = 500;
+
+    /**
+     * How long the writer waits for a batch to fill up before saving it.
+     */
+    private Duration maxLatency = Duration.ofMillis(20);
+
+    /**
+     * How long the outcome of a registration can be read from its ticket, once the user is
+     * saved.
+     */
+    private Duration ticketTtl = Duration.ofMinutes(10);
+
+    /**
+     * Maximum number of outcomes kept for their tickets, the oldest ones are forgotten beyond.
+     * The tickets of the queued users are always kept, up to queue-capacity.
+     */
+    private long completedTickets = 10_000;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    public Duration getMaxLatency() {
+      return maxLatency;
+    }
+
+    public void setMaxLatency(Duration maxLatency) {
+      this.maxLatency = maxLatency;
+    }
+
+    public Duration getTicketTtl() {
+      return ticketTtl;
+    }
+
+    public void setTicketTtl(Duration ticketTtl) {
+      this.ticketTtl = ticketTtl;
+    }
+
+    public long getCompletedTickets() {
+      return completedTickets;
+    }
+
+    public void setCompletedTickets(long completedTickets) {
+      this.completedTickets = completedTickets;
+    }
+  }
+
+  /**
+   * Settings of the user search.
+   */
+  public static class Search {
+
+    /**
+     * Number of users of a result page when not given.
+     */
+    private int pageSize = 20;
+
+    /**
+     * Maximum number of users of a result page.
+     */
+    private int maxPageSize = 100;
+
+    /**
+     * Maximum number of users reachable through pagination, deeper pages are empty.
+     */
+    private int maxResults = 10_000;
+
+    /**
+     * Number of terms of the users registered since the last merge which triggers the merge of
+     * these terms into the sorted index.
+     */
+    private int mergeThreshold = 100_000;
+
+    public int getPageSize() {
+      return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+    }
+
+    public int getMaxPageSize() {
+      return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+      this.maxPageSize = maxPageSize;
+    }
+
+    public int getMaxResults() {
+      return maxResults;
+    }
+
+    public void setMaxResults(int maxResults) {
+      this.maxResults = maxResults;
+    }
+
+    public int getMergeThreshold() {
+      return mergeThreshold;
+    }
+
+    public void setMergeThreshold(int mergeThreshold) {
+      this.mergeThreshold = mergeThreshold;
+    }
+  }
+
+  /**
+   * Settings of the compact copy of the users serving username lookups.
+   */
+  public static class RecordStore {
+
+    /**
+     * Whether username lookups are served by the record store instead of the entity cache.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of users the lookup table is sized for, it doubles beyond.
+     */
+    private long initialCapacity = 1_000_000;
+
+    /**
+     * Size of the memory blocks the records are written to.
+     */
+    private DataSize chunkSize = DataSize.ofMegabytes(64);
+
+    /**
+     * File mapped to hold the records, none if empty: the records are then kept in direct
+     * memory, bounded by -XX:MaxDirectMemorySize.
+     */
+    private String file;
+
+    /**
+     * Directory where the store is saved and its changes logged, to be restored on startup,
+     * none if empty.
+     */
+    private String snapshotDirectory;
+
+    /**
+     * Time between two snapshots, the change log growing in between.
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getInitialCapacity() {
+      return initialCapacity;
+    }
+
+    public void setInitialCapacity(long initialCapacity) {
+      this.initialCapacity = initialCapacity;
+    }
+
+    public DataSize getChunkSize() {
+      return chunkSize;
+    }
+
+    public void setChunkSize(DataSize chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+
+    public String getFile() {
+      return file;
+    }
+
+    public void setFile(String file) {
+      this.file = file;
+    }
+
+    public String getSnapshotDirectory() {
+      return snapshotDirectory;
+    }
+
+    public void setSnapshotDirectory(String snapshotDirectory) {
+      this.snapshotDirectory = snapshotDirectory;
+    }
+
+    public Duration getSnapshotInterval() {
+      return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(Duration snapshotInterval) {
+      this.snapshotInterval = snapshotInterval;
+    }
+  }
+
+  /**
+   * Settings of the storage of the registered users.
+   */
+  public static class Persistence {
+
+    /**
+     * JPA - users saved in the database by UserServiceImpl
+     * JOURNAL - users appended to a journal file by JournalUserServiceImpl, no database
+     * transaction per registration
+     */
+    public enum Engine {
+      JPA, JOURNAL
+    }
+
+    private Engine engine = Engine.JPA;
+
+    /**
+     * Directory of the journal segments.
+     */
+    private String journalDirectory = "journal";
+
+    /**
+     * Whether each group of records is forced to the disk before the registrations are
+     * answered; without it a crash of the machine, not of the process, may lose the last ones.
+     */
+    private boolean fsync = true;
+
+    /**
+     * Time the journal writer waits for more registrations before writing a group, none by
+     * default: the registrations arriving during a write and its fsync make the next group.
+     */
+    private Duration groupCommitDelay = Duration.ZERO;
+
+    /**
+     * Most records written and forced together.
+     */
+    private int maxGroupSize = 1000;
+
+    /**
+     * Size beyond which the journal moves on to a new segment.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Number of full segments merged in the background into a single one.
+     */
+    private int compactionSegments = 8;
+
+    public Engine getEngine() {
+      return engine;
+    }
+
+    public void setEngine(Engine engine) {
+      this.engine = engine;
+    }
+
+    public String getJournalDirectory() {
+      return journalDirectory;
+    }
+
+    public void setJournalDirectory(String journalDirectory) {
+      this.journalDirectory = journalDirectory;
+    }
+
+    public boolean isFsync() {
+      return fsync;
+    }
+
+    public void setFsync(boolean fsync) {
+      this.fsync = fsync;
+    }
+
+    public Duration getGroupCommitDelay() {
+      return groupCommitDelay;
+    }
+
+    public void setGroupCommitDelay(Duration groupCommitDelay) {
+      this.groupCommitDelay = groupCommitDelay;
+    }
+
+    public int getMaxGroupSize() {
+      return maxGroupSize;
+    }
+
+    public void setMaxGroupSize(int maxGroupSize) {
+      this.maxGroupSize = maxGroupSize;
+    }
+
+    public DataSize getSegmentSize() {
+      return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+      this.segmentSize = segmentSize;
+    }
+
+    public int getCompactionSegments() {
+      return compactionSegments;
+    }
+
+    public void setCompactionSegments(int compactionSegments) {
+      this.compactionSegments = compactionSegments;
+    }
+  }
+}
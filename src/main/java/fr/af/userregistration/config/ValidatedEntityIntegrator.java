@@ -0,0 +1,59 @@
+package fr.af.userregistration.config;
+
+import fr.af.userregistration.entity.User;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.beanvalidation.BeanValidationEventListener;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Wraps the pre-insert bean validation listener registered by Hibernate so that
+ * users marked with {@link User#markValidated()} are not validated a second time.
+ * Every other entity, and every update, is still validated.
+ */
+public class ValidatedEntityIntegrator implements Integrator {
+
+  @Override
+  public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+      SessionFactoryServiceRegistry serviceRegistry) {
+    EventListenerGroup<PreInsertEventListener> group = serviceRegistry
+        .getService(EventListenerRegistry.class).getEventListenerGroup(EventType.PRE_INSERT);
+    List<PreInsertEventListener> listeners = new ArrayList<>();
+    group.fireEventOnEachListener(listeners, (listener, wrapped) -> wrapped.add(
+        listener instanceof BeanValidationEventListener
+            ? new SkipValidatedListener(listener) : listener));
+    group.clearListeners();
+    listeners.forEach(group::appendListener);
+  }
+
+  @Override
+  public void disintegrate(SessionFactoryImplementor sessionFactory,
+      SessionFactoryServiceRegistry serviceRegistry) {
+  }
+
+  private static final class SkipValidatedListener implements PreInsertEventListener {
+
+    private final PreInsertEventListener validation;
+
+    private SkipValidatedListener(PreInsertEventListener validation) {
+      this.validation = validation;
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+      Object entity = event.getEntity();
+      if (entity instanceof User && ((User) entity).isValidated()) {
+        return false;
+      }
+      return validation.onPreInsert(event);
+    }
+  }
+}
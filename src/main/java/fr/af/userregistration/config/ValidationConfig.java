@@ -0,0 +1,37 @@
+package fr.af.userregistration.config;
+
+import org.hibernate.validator.HibernateValidatorConfiguration;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.validation.MessageInterpolatorFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+/**
+ * Replaces the validator of Spring Boot by a fail-fast one, enabled by
+ * user-registration.validation.fail-fast=true: a request stops being validated at its first
+ * constraint violation, so that junk payloads are rejected without checking every constraint.
+ * Valid requests check every constraint either way. The same validator serves the controllers
+ * and the bulk registrations, which then report the first violation of each user.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-registration.validation", name = "fail-fast",
+    havingValue = "true")
+public class ValidationConfig {
+
+  /**
+   * Built like the default validator of Spring Boot, which backs off when this one exists.
+   */
+  @Bean
+  @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+  public static LocalValidatorFactoryBean defaultValidator(ApplicationContext applicationContext) {
+    LocalValidatorFactoryBean factoryBean = new LocalValidatorFactoryBean();
+    factoryBean.setMessageInterpolator(
+        new MessageInterpolatorFactory(applicationContext).getObject());
+    factoryBean.getValidationPropertyMap().put(HibernateValidatorConfiguration.FAIL_FAST, "true");
+    return factoryBean;
+  }
+}
@@ -0,0 +1,72 @@
+package fr.af.userregistration.config;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Runs each request, and each task of the application task executor (asynchronous MVC
+ * responses), on its own virtual thread, enabled by user-registration.execution.mode=virtual.
+ * A request blocked on JDBC then parks a virtual thread instead of holding a Tomcat worker;
+ * the number of concurrent queries stays bounded by the connection pool.
+ * Virtual threads are looked up at runtime so the application still builds for Java 11;
+ * startup fails when they are not available.
+ */
+@Configuration
+@ConditionalOnClass(ProtocolHandler.class)
+@ConditionalOnProperty(prefix = "user-registration.execution", name = "mode",
+    havingValue = "virtual")
+public class VirtualThreadConfig implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+  private final ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Creates an executor starting a new virtual thread for each task.
+   * @return the executor
+   * @throws IllegalStateException if the JVM has no virtual threads (before Java 21)
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class,
+          "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+      return (ExecutorService) factory.invokeExact();
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later, running on "
+          + System.getProperty("java.version"), e);
+    } catch (Throwable e) {
+      throw new IllegalStateException("Can't create the virtual thread executor", e);
+    }
+  }
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler() {
+    LOGGER.info("Requests run on virtual threads");
+    return protocolHandler -> protocolHandler.setExecutor(virtualThreads);
+  }
+
+  @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+  public AsyncTaskExecutor applicationTaskExecutor() {
+    return new TaskExecutorAdapter(virtualThreads);
+  }
+
+  @Override
+  public void destroy() {
+    virtualThreads.shutdown();
+  }
+}
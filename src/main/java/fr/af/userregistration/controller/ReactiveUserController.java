@@ -0,0 +1,139 @@
+package fr.af.userregistration.controller;
+
+import fr.af.userregistration.cache.ValidationErrorCache;
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.interfaces.IReactiveUserService;
+import fr.af.userregistration.util.ObjectMapper;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import java.util.List;
+import javax.validation.Valid;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.ObjectError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux version of {@link UserController}, with the same contract, enabled by the
+ * "reactive" profile.
+ */
+@RestController
+@RequestMapping("/user")
+@Profile("reactive")
+public class ReactiveUserController {
+
+  private static final String USER_NAME_CONFLICT = "User name is already taken";
+
+  private IReactiveUserService userService;
+
+  private ValidationErrorCache validationErrorCache;
+
+  private RegistrationMetrics registrationMetrics;
+
+  public ReactiveUserController(IReactiveUserService userService,
+      ValidationErrorCache validationErrorCache, RegistrationMetrics registrationMetrics) {
+    this.userService = userService;
+    this.validationErrorCache = validationErrorCache;
+    this.registrationMetrics = registrationMetrics;
+  }
+
+  /**
+   * This method allows the display user details by their username
+   *
+   * @param username - Username of an existing user
+   * @return user with its infos
+   */
+  @GetMapping("/byUsername/{username}")
+  @ResponseStatus(HttpStatus.OK)
+  public Mono<UserDTO> getUserByUserName(@PathVariable("username") String username) {
+    return userService.getUserByUserName(username)
+        .map(user -> ObjectMapper.map(user, UserDTO.class));
+  }
+
+  /**
+   * this method allows the registration of a user
+   *
+   * @param user - User to be registered with valid fields
+   * @return Message to indicate that a user is created with success
+   */
+  @PostMapping()
+  @ResponseStatus(HttpStatus.OK)
+  public Mono<String> createUser(@Valid @RequestBody UserDTO user) {
+    User newUser = ObjectMapper.map(user, User.class);
+    return userService.createUser(newUser).thenReturn("User created with success");
+  }
+
+  /**
+   * this method allows the interception of Validation Exception and displays non-valid fields with
+   * their corresponding error message, a single one in fail-fast mode
+   *
+   * @param ex - Validation exception
+   * @return a 400 with the error message of each field, serialized once by
+   *     {@link ValidationErrorCache}
+   */
+  @ExceptionHandler(WebExchangeBindException.class)
+  public ResponseEntity<byte[]> handleValidationExceptions(WebExchangeBindException ex) {
+    List<ObjectError> errors = ex.getBindingResult().getAllErrors();
+    registrationMetrics.requestRejected();
+    errors.forEach(error ->
+        registrationMetrics.validationFailed(ValidationErrorCache.field(error)));
+    return ResponseEntity.badRequest()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(validationErrorCache.body(errors));
+  }
+
+  /**
+   * this method allows the interception of the registrations of a username already taken,
+   * detected by the unique index of the usernames
+   *
+   * @param ex - a username taken or data integrity exception
+   * @return a 409 with the message of the exception
+   */
+  @ResponseStatus(HttpStatus.CONFLICT)
+  @ExceptionHandler({UserNameTakenException.class, DataIntegrityViolationException.class,
+      R2dbcDataIntegrityViolationException.class})
+  public String handleConflictExceptions(RuntimeException ex) {
+    return ex instanceof UserNameTakenException ? ex.getMessage() : USER_NAME_CONFLICT;
+  }
+
+  /**
+   * this method allows the interception of Not Found Exception and displays their corresponding
+   * error message
+   *
+   * @param ex - a resource not found exception
+   * @return the message of the exception
+   */
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  @ExceptionHandler(ResourceNotFoundException.class)
+  public String handleNotFoundExceptions(ResourceNotFoundException ex) {
+    return ex.getMessage();
+  }
+
+  /**
+   * this method allows the interception of Unknowing Exceptions and displays their corresponding
+   * error message
+   *
+   * @param ex - an exception in general
+   * @return the message of the exception
+   */
+  @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+  @ExceptionHandler(Exception.class)
+  public String handleExceptions(Exception ex) {
+    return ex.getMessage();
+  }
+}
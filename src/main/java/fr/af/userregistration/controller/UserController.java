@@ -1,79 +1,317 @@
 package fr.af.userregistration.controller;
 
+import fr.af.userregistration.cache.IdempotencyStore;
+import fr.af.userregistration.cache.ValidationErrorCache;
+import fr.af.userregistration.config.ExportTimeoutConfig;
+import fr.af.userregistration.dto.AvailabilityDTO;
+import fr.af.userregistration.dto.BatchReportDTO;
+import fr.af.userregistration.dto.RegistrationTicketDTO;
 import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.dto.UserSearchDTO;
 import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.ExportFormat;
+import fr.af.userregistration.exception.RegistrationQueueFullException;
 import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.interfaces.IUserBatchService;
+import fr.af.userregistration.service.interfaces.IUserExportService;
+import fr.af.userregistration.service.interfaces.IUserSearchService;
 import fr.af.userregistration.service.interfaces.IUserService;
+import fr.af.userregistration.service.interfaces.IUserWriteBehindService;
 import fr.af.userregistration.util.ObjectMapper;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
 import javax.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.validation.FieldError;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/user")
+@Profile("!reactive")
 public class UserController {
 
+  private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  private static final String TEXT_CSV = "text/csv";
+
+  private static final String USER_NAME_CONFLICT = "User name is already taken";
+
+  /**
+   * Response header giving the registration time up to which users were exported, to be passed
+   * as "since" to the next export.
+   */
+  private static final String EXPORT_WATERMARK = "X-Export-Watermark";
+
   private IUserService userService;
 
-  public UserController(IUserService userService) {
+  private IUserBatchService userBatchService;
+
+  private IUserExportService userExportService;
+
+  private IdempotencyStore idempotencyStore;
+
+  private IUserWriteBehindService userWriteBehindService;
+
+  private IUserSearchService userSearchService;
+
+  private ValidationErrorCache validationErrorCache;
+
+  private RegistrationMetrics registrationMetrics;
+
+  public UserController(IUserService userService, IUserBatchService userBatchService,
+      IUserExportService userExportService, IdempotencyStore idempotencyStore,
+      IUserWriteBehindService userWriteBehindService, IUserSearchService userSearchService,
+      ValidationErrorCache validationErrorCache, RegistrationMetrics registrationMetrics) {
     this.userService = userService;
+    this.userBatchService = userBatchService;
+    this.userExportService = userExportService;
+    this.idempotencyStore = idempotencyStore;
+    this.userWriteBehindService = userWriteBehindService;
+    this.userSearchService = userSearchService;
+    this.validationErrorCache = validationErrorCache;
+    this.registrationMetrics = registrationMetrics;
   }
 
   /**
    * This method allows the display user details by their username
    *
    * @param username - Username of an existing user
-   * @return user with its infos
+   * @return user with its infos, or a 404 with a message if no user has this username
    */
   @GetMapping("/byUsername/{username}")
+  public ResponseEntity<Object> getUserByUserName(@PathVariable("username") String username) {
+    Optional<User> user = userService.findUserByUserName(username);
+    if (user.isEmpty()) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND)
+          .contentType(MediaType.TEXT_PLAIN)
+          .body(ResourceNotFoundException.userNotFoundMessage(username));
+    }
+    return ResponseEntity.ok(ObjectMapper.map(user.get(), UserDTO.class));
+  }
+
+  /**
+   * this method allows checking that a username is still free, ignoring case
+   *
+   * @param username - Username to check
+   * @return the username and whether it is available
+   */
+  @GetMapping("/available/{username}")
   @ResponseStatus(HttpStatus.OK)
-  public UserDTO getUserByUserName(@PathVariable("username") String username) {
-    return ObjectMapper.map(userService.getUserByUserName(username), UserDTO.class);
+  public AvailabilityDTO isUserNameAvailable(@PathVariable("username") String username) {
+    return new AvailabilityDTO(username, userService.isUserNameAvailable(username));
+  }
+
+  /**
+   * this method allows finding users by the beginning of their username, of a word of their
+   * first or last name, or of their full name, ignoring case and accents
+   *
+   * @param query - searched text
+   * @param page - number of the page, starting at 0
+   * @param size - number of users of the page
+   * @return the matching users of the page, exact matches first
+   */
+  @GetMapping("/search")
+  @ResponseStatus(HttpStatus.OK)
+  public UserSearchDTO searchUsers(@RequestParam("q") String query,
+      @RequestParam(value = "page", defaultValue = "0") int page,
+      @RequestParam(value = "size", defaultValue = "0") int size) {
+    return userSearchService.searchUsers(query, page, size);
+  }
+
+  /**
+   * this method allows finding the users registered with a phone number, whatever the national
+   * format it is written in
+   *
+   * @param phoneNumber - phone number, ex: 0612345678
+   * @return the users with this phone number, empty if none or if the number is not valid
+   */
+  @GetMapping("/byPhone/{phoneNumber}")
+  @ResponseStatus(HttpStatus.OK)
+  public List<UserDTO> findUsersByPhoneNumber(@PathVariable("phoneNumber") String phoneNumber) {
+    return userSearchService.findUsersByPhoneNumber(phoneNumber);
   }
 
   /**
    * this method allows the registration of a user
    *
+   * Retries sent with the same Idempotency-Key header get the response of the first request,
+   * with an Idempotent-Replayed header, without registering the user again. A key reused for
+   * another user, differing by any field, is rejected with a 422.
+   *
    * @param user - User to be registered with valid fields
+   * @param idempotencyKey - optional key identifying the request across its retries
    * @return Message to indicate that a user is created with success
    */
   @PostMapping()
+  public ResponseEntity<String> createUser(@Valid @RequestBody UserDTO user,
+      @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY, required = false)
+          String idempotencyKey) throws Exception {
+    if (idempotencyKey == null) {
+      return register(user);
+    }
+    return idempotencyStore.execute(idempotencyKey, fingerprint(user), () -> register(user));
+  }
+
+  /**
+   * Identifies a registration by its canonical user: the same user with another username case
+   * or phone number format has the same fingerprint.
+   */
+  private static String fingerprint(UserDTO user) {
+    Long phoneKey = User.normalizePhoneNumber(user.getPhoneNumber());
+    return IdempotencyStore.fingerprint(User.normalizeUserName(user.getUserName()),
+        user.getFirstName(), user.getLastName(), user.getResidenceCountry(),
+        user.getBirthDate() == null ? null : user.getBirthDate().getTime(),
+        phoneKey == null ? user.getPhoneNumber() : phoneKey, user.getGender());
+  }
+
+  private ResponseEntity<String> register(UserDTO user) throws Exception {
+    User newUser = ObjectMapper.map(user, User.class);
+    newUser.markValidated();
+    userService.createUser(newUser);
+    return ResponseEntity.ok("User created with success");
+  }
+
+  /**
+   * this method allows the registration of a user without waiting for it to be saved.
+   * The user is validated and its username checked right away, then it is queued.
+   * When write-behind is disabled, the user is saved before answering.
+   *
+   * @param user - User to be registered with valid fields
+   * @return a 202 with the ticket of the registration, to be polled at its Location, or a 200
+   *     with the outcome of the registration when it was saved right away
+   */
+  @PostMapping("/async")
+  public ResponseEntity<RegistrationTicketDTO> createUserAsync(@Valid @RequestBody UserDTO user)
+      throws Exception {
+    User newUser = ObjectMapper.map(user, User.class);
+    newUser.markValidated();
+    RegistrationTicketDTO ticket = userWriteBehindService.submit(newUser);
+    if (ticket.getTicket() == null) {
+      return ResponseEntity.ok(ticket);
+    }
+    return ResponseEntity.accepted()
+        .location(URI.create("/user/async/" + ticket.getTicket()))
+        .body(ticket);
+  }
+
+  /**
+   * this method allows following an asynchronous registration
+   *
+   * @param ticket - ticket returned by the registration
+   * @return the progress of the registration, or a 404 if the ticket is unknown or expired
+   */
+  @GetMapping("/async/{ticket}")
+  public ResponseEntity<RegistrationTicketDTO> getRegistrationTicket(
+      @PathVariable("ticket") String ticket) {
+    return ResponseEntity.of(userWriteBehindService.getTicket(ticket));
+  }
+
+  /**
+   * this method allows the registration of many users at once.
+   * Each user is validated on its own, valid users are saved by batches.
+   *
+   * @param users - JSON array of users, or one JSON user per line (NDJSON)
+   * @return the outcome of each user
+   */
+  @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON})
   @ResponseStatus(HttpStatus.OK)
-  public String createUser(@Valid @RequestBody UserDTO user) throws Exception {
-    userService.createUser(ObjectMapper.map(user, User.class));
-    return "User created with success";
+  public BatchReportDTO createUsers(InputStream users) throws Exception {
+    return userBatchService.importUsers(users);
+  }
+
+  /**
+   * this method allows the export of every user, as NDJSON or as CSV (Accept: text/csv).
+   * Users are streamed page by page in registration order while the response is written.
+   * The export stops at a registration time chosen when it starts, returned in the
+   * X-Export-Watermark header: passing it as "since" to the next export gives the users
+   * registered in between, each one exactly once.
+   *
+   * @param since - only the users registered later, in milliseconds since the epoch, are
+   *     exported, for incremental syncs
+   * @param accept - Accept header of the request, selects the format
+   * @param request - the request, given the timeout of exports
+   * @return the users, streamed
+   */
+  @GetMapping(value = "/export", produces = {APPLICATION_NDJSON, TEXT_CSV})
+  public ResponseEntity<StreamingResponseBody> exportUsers(
+      @RequestParam(value = "since", defaultValue = "0") long since,
+      @RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = APPLICATION_NDJSON)
+          String accept, WebRequest request) {
+    ExportTimeoutConfig.markExport(request);
+    ExportFormat format = accept.contains(TEXT_CSV) ? ExportFormat.CSV : ExportFormat.NDJSON;
+    long watermark = userExportService.getWatermark();
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format.getMediaType()))
+        .header(EXPORT_WATERMARK, String.valueOf(watermark))
+        .body(out -> userExportService.exportUsers(since, watermark, format, out));
   }
 
   /**
    * this method allows the interception of Validation Exception and displays non-valid fields with
-   * their corresponding error message
+   * their corresponding error message, a single one in fail-fast mode
    *
    * @param ex - Validation exception
-   * @return error field with error message
+   * @return a 400 with the error message of each field, serialized once by
+   *     {@link ValidationErrorCache}
    */
-
-  @ResponseStatus(HttpStatus.BAD_REQUEST)
   @ExceptionHandler(MethodArgumentNotValidException.class)
-  public Map<String, String> handleValidationExceptions(
+  public ResponseEntity<byte[]> handleValidationExceptions(
       MethodArgumentNotValidException ex) {
-    Map<String, String> errors = new HashMap<>();
-    ex.getBindingResult().getAllErrors().forEach(error -> {
-      String fieldName = ((FieldError) error).getField();
-      String errorMessage = error.getDefaultMessage();
-      errors.put(fieldName, errorMessage);
-    });
-    return errors;
+    List<ObjectError> errors = ex.getBindingResult().getAllErrors();
+    registrationMetrics.requestRejected();
+    errors.forEach(error ->
+        registrationMetrics.validationFailed(ValidationErrorCache.field(error)));
+    return ResponseEntity.badRequest()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(validationErrorCache.body(errors));
+  }
+
+  /**
+   * this method allows the interception of the registrations of a username already taken,
+   * detected before the insert or, for concurrent registrations, by the unique index
+   *
+   * @param ex - a username taken exception or a constraint violation of the database
+   * @return the message of the exception
+   */
+  @ResponseStatus(HttpStatus.CONFLICT)
+  @ExceptionHandler({UserNameTakenException.class, DataIntegrityViolationException.class})
+  public String handleConflictExceptions(RuntimeException ex) {
+    return ex instanceof UserNameTakenException ? ex.getMessage() : USER_NAME_CONFLICT;
+  }
+
+  /**
+   * this method allows the interception of the registrations rejected because too many users
+   * are waiting to be saved, telling the client when to retry
+   *
+   * @param ex - a queue full exception
+   * @return a 503 with the message of the exception and a Retry-After header
+   */
+  @ExceptionHandler(RegistrationQueueFullException.class)
+  public ResponseEntity<String> handleQueueFullExceptions(RegistrationQueueFullException ex) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+        .body(ex.getMessage());
   }
 
   /**
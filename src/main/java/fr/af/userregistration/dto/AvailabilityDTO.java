@@ -0,0 +1,35 @@
+package fr.af.userregistration.dto;
+
+import java.io.Serializable;
+
+/**
+ * Tells whether a username can still be registered.
+ */
+public class AvailabilityDTO implements Serializable {
+
+  /**
+   * Represents the checked username, as submitted.
+   */
+  private String userName;
+
+  /**
+   * Represents whether no user has this username, ignoring case.
+   */
+  private boolean available;
+
+  public AvailabilityDTO() {
+  }
+
+  public AvailabilityDTO(String userName, boolean available) {
+    this.userName = userName;
+    this.available = available;
+  }
+
+  public String getUserName() {
+    return userName;
+  }
+
+  public boolean isAvailable() {
+    return available;
+  }
+}
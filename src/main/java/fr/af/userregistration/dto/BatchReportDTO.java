@@ -0,0 +1,133 @@
+package fr.af.userregistration.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a bulk registration: global counters and the outcome of each submitted user.
+ */
+public class BatchReportDTO implements Serializable {
+
+  /**
+   * Outcome of one submitted user.
+   * CREATED - the user is registered
+   * INVALID - the user did not pass validation, see errors
+   * FAILED - the user was valid but could not be saved, see errors
+   */
+  public enum Status {
+    CREATED, INVALID, FAILED
+  }
+
+  /**
+   * Represents the number of users read from the request.
+   */
+  private int total;
+
+  /**
+   * Represents the number of users registered.
+   */
+  private int created;
+
+  /**
+   * Represents the outcome of each user.
+   * Invalid users are reported as soon as they are read, valid ones once their batch is saved.
+   */
+  private List<Item> items = new ArrayList<>();
+
+  /**
+   * Records the outcome of the next user of the request.
+   * @param item - outcome of the user
+   */
+  public void addItem(Item item) {
+    items.add(item);
+    total++;
+    if (item.getStatus() == Status.CREATED) {
+      created++;
+    }
+  }
+
+  /**
+   * Gets the number of users read from the request
+   * @return number of users
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * Gets the number of users registered
+   * @return number of created users
+   */
+  public int getCreated() {
+    return created;
+  }
+
+  /**
+   * Gets the outcome of each user
+   * @return outcomes, each one with the position of the user in the request
+   */
+  public List<Item> getItems() {
+    return items;
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_EMPTY)
+  public static class Item implements Serializable {
+
+    /**
+     * Represents the position of the user in the request, starting at 0.
+     */
+    private int index;
+
+    /**
+     * Represents the username of the submitted user.
+     */
+    private String userName;
+
+    /**
+     * Represents the id given to the user when created.
+     */
+    private Long id;
+
+    private Status status;
+
+    /**
+     * Represents non-valid fields with their error message,
+     * or the cause of the failure.
+     */
+    private Map<String, String> errors;
+
+    public Item() {
+    }
+
+    public Item(int index, String userName, Long id, Status status, Map<String, String> errors) {
+      this.index = index;
+      this.userName = userName;
+      this.id = id;
+      this.status = status;
+      this.errors = errors;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public String getUserName() {
+      return userName;
+    }
+
+    public Long getId() {
+      return id;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    public Map<String, String> getErrors() {
+      return errors;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package fr.af.userregistration.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+
+/**
+ * Progress of an asynchronous registration, updated by the writer once the user is saved.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RegistrationTicketDTO implements Serializable {
+
+  /**
+   * Progress of the registration.
+   * PENDING - the user is queued, not saved yet
+   * CREATED - the user is registered
+   * FAILED - the user could not be saved, see error
+   */
+  public enum Status {
+    PENDING, CREATED, FAILED
+  }
+
+  /**
+   * Represents the identifier of the registration, to poll its status.
+   */
+  private String ticket;
+
+  /**
+   * Represents the username of the submitted user.
+   */
+  private String userName;
+
+  private volatile Status status = Status.PENDING;
+
+  /**
+   * Represents the id given to the user when created.
+   */
+  private volatile Long id;
+
+  /**
+   * Represents the cause of the failure.
+   */
+  private volatile String error;
+
+  public RegistrationTicketDTO() {
+  }
+
+  public RegistrationTicketDTO(String ticket, String userName) {
+    this.ticket = ticket;
+    this.userName = userName;
+  }
+
+  /**
+   * Records that the user is registered.
+   * @param id - id given to the user
+   */
+  public void created(Long id) {
+    this.id = id;
+    this.status = Status.CREATED;
+  }
+
+  /**
+   * Records that the user could not be saved.
+   * @param error - cause of the failure
+   */
+  public void failed(String error) {
+    this.error = error;
+    this.status = Status.FAILED;
+  }
+
+  public String getTicket() {
+    return ticket;
+  }
+
+  public String getUserName() {
+    return userName;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
@@ -4,11 +4,11 @@ import fr.af.userregistration.constants.ValidationMessages;
 import fr.af.userregistration.enumeration.Gender;
 import fr.af.userregistration.validator.AgeConstraint;
 import fr.af.userregistration.validator.CountryConstraint;
+import fr.af.userregistration.validator.PhoneConstraint;
 import java.io.Serializable;
 import java.util.Date;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Pattern;
 
 public class UserDTO implements Serializable {
 
@@ -58,7 +58,7 @@ public class UserDTO implements Serializable {
    * It starts with 0, followed y number between 1 and 9.
    * It has to be 10 digits number
    */
-  @Pattern(regexp = "0[1-9]\\d{8}", message = ValidationMessages.INVALID_PHONE_NUMBER)
+  @PhoneConstraint(message = ValidationMessages.INVALID_PHONE_NUMBER)
   private String phoneNumber;
 
   /**
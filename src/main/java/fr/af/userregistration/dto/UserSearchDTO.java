@@ -0,0 +1,66 @@
+package fr.af.userregistration.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of the users matching a search.
+ */
+public class UserSearchDTO implements Serializable {
+
+  /**
+   * Represents the searched text, as submitted.
+   */
+  private String query;
+
+  /**
+   * Represents the number of the page, starting at 0.
+   */
+  private int page;
+
+  /**
+   * Represents the maximum number of users of the page.
+   */
+  private int size;
+
+  /**
+   * Represents whether the next page has users.
+   */
+  private boolean hasMore;
+
+  /**
+   * Represents the matching users, best ranked first.
+   */
+  private List<UserDTO> users;
+
+  public UserSearchDTO() {
+  }
+
+  public UserSearchDTO(String query, int page, int size, boolean hasMore, List<UserDTO> users) {
+    this.query = query;
+    this.page = page;
+    this.size = size;
+    this.hasMore = hasMore;
+    this.users = users;
+  }
+
+  public String getQuery() {
+    return query;
+  }
+
+  public int getPage() {
+    return page;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isHasMore() {
+    return hasMore;
+  }
+
+  public List<UserDTO> getUsers() {
+    return users;
+  }
+}
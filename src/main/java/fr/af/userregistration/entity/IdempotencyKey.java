@@ -0,0 +1,108 @@
+package fr.af.userregistration.entity;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Outcome of a request sent with an Idempotency-Key header, replayed to its retries.
+ * Only used when user-registration.idempotency.persistent is true.
+ */
+@Entity
+@Table(name = "idempotency_key")
+public class IdempotencyKey implements Serializable, Persistable<String> {
+
+  /**
+   * Represents the Idempotency-Key header of the request.
+   */
+  @Id
+  @Column(name = "request_key")
+  private String requestKey;
+
+  /**
+   * Represents what identifies the request, to detect a key reused for another request.
+   */
+  @Column(name = "fingerprint")
+  private String fingerprint;
+
+  /**
+   * Represents the HTTP status of the response.
+   */
+  @Column(name = "status")
+  private int status;
+
+  /**
+   * Represents the body of the response.
+   */
+  @Column(name = "body", length = 1000)
+  private String body;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "created_at")
+  private Date createdAt;
+
+  /**
+   * Tells that the outcome was built by the application and never saved, so that saving it
+   * inserts it without looking it up first. It is not persisted.
+   */
+  @Transient
+  private boolean unsaved;
+
+  public IdempotencyKey() {
+  }
+
+  public IdempotencyKey(String requestKey, String fingerprint, int status, String body,
+      Date createdAt) {
+    this.requestKey = requestKey;
+    this.fingerprint = fingerprint;
+    this.status = status;
+    this.body = body;
+    this.createdAt = createdAt;
+    this.unsaved = true;
+  }
+
+  public String getRequestKey() {
+    return requestKey;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  public Date getCreatedAt() {
+    return createdAt;
+  }
+
+  @Override
+  public String getId() {
+    return requestKey;
+  }
+
+  @Override
+  public boolean isNew() {
+    return unsaved;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markSaved() {
+    unsaved = false;
+  }
+}
@@ -4,8 +4,11 @@ import fr.af.userregistration.constants.ValidationMessages;
 import fr.af.userregistration.enumeration.Gender;
 import fr.af.userregistration.validator.AgeConstraint;
 import fr.af.userregistration.validator.CountryConstraint;
+import fr.af.userregistration.validator.PhoneConstraint;
+import fr.af.userregistration.validator.PhoneFormat;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Locale;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -13,13 +16,13 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
-import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Pattern;
 
 /**
  * User is the main entity it contains important details of a user
@@ -27,23 +30,38 @@ import javax.validation.constraints.Pattern;
  */
 
 @Entity
-@Table(name = "`user`", uniqueConstraints = {@UniqueConstraint(columnNames = "userName")})
+@Table(name = "`user`", indexes = {
+    @Index(name = "ux_user_user_name_key", columnList = "user_name_key", unique = true),
+    @Index(name = "ix_user_phone_key", columnList = "phone_key"),
+    @Index(name = "ix_user_registered_at", columnList = "registered_at, id")})
 public class User implements Serializable {
 
   /**
    * Represents a user id.
    * It's the primary key.
+   * Ids come from a pooled sequence so that inserts can be batched.
    */
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+  @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
   private Long id;
 
   /**
    * Represents the username.
-   * It is mandatory and unique.
+   * It is mandatory and unique, ignoring case.
    */
   @Column(name = "user_name")
   @NotBlank(message = ValidationMessages.USERNAME_REQUIRED)
   private String userName;
 
+  /**
+   * Represents the username in lower case, see {@link #normalizeUserName(String)}.
+   * It is the unique, indexed, lookup key of users.
+   * It is maintained by {@link #setUserName(String)}.
+   */
+  @Column(name = "user_name_key", nullable = false)
+  private String userNameKey;
+
   /**
    * Represents first name of a user
    * It is optional.
@@ -88,10 +106,19 @@ public class User implements Serializable {
    * It starts with 0, followed y number between 1 and 9.
    * It has to be 10 digits number
    */
-  @Pattern(regexp = "0[1-9]\\d{8}", message = ValidationMessages.INVALID_PHONE_NUMBER)
+  @PhoneConstraint(message = ValidationMessages.INVALID_PHONE_NUMBER)
   @Column(name = "phone_number")
   private String phoneNumber;
 
+  /**
+   * Represents the phone number in international numeric form,
+   * see {@link #normalizePhoneNumber(String)}.
+   * It is the indexed lookup key of users by phone number.
+   * It is maintained by {@link #setPhoneNumber(String)}.
+   */
+  @Column(name = "phone_key")
+  private Long phoneKey;
+
   /**
    * Represents the gender of a user.
    * It's optional.
@@ -104,13 +131,74 @@ public class User implements Serializable {
   @Enumerated(EnumType.STRING)
   private Gender gender;
 
+  /**
+   * Represents the time the user was inserted, given by the database.
+   * Exports read users in this order, see UserRepository#findUsersRegisteredAfter.
+   * It is not written by the application: it is null on a user which was just saved.
+   */
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "registered_at", nullable = false, insertable = false, updatable = false,
+      columnDefinition = "timestamp default localtimestamp")
+  private Date registeredAt;
+
+  /**
+   * Tells that the user was built from a DTO which already passed validation.
+   * It is not persisted.
+   */
+  private transient boolean validated;
+
+  public User() {
+  }
+
+  /**
+   * Builds a read-only copy of a user, used by repository projections.
+   */
+  public User(Long id, String userName, String firstName, String lastName,
+      String residenceCountry, Date birthDate, String phoneNumber, Gender gender) {
+    this.id = id;
+    setUserName(userName);
+    this.firstName = firstName;
+    this.lastName = lastName;
+    this.residenceCountry = residenceCountry;
+    this.birthDate = birthDate;
+    setPhoneNumber(phoneNumber);
+    this.gender = gender;
+  }
+
+  /**
+   * Builds a read-only copy of a user with its registration time, used by exports.
+   */
+  public User(Long id, String userName, String firstName, String lastName,
+      String residenceCountry, Date birthDate, String phoneNumber, Gender gender,
+      Date registeredAt) {
+    this(id, userName, firstName, lastName, residenceCountry, birthDate, phoneNumber, gender);
+    this.registeredAt = registeredAt;
+  }
+
+  /**
+   * Gives the lookup key of a username: usernames differing only by case are the same user.
+   * @param userName - username, may be null
+   * @return username in lower case
+   */
+  public static String normalizeUserName(String userName) {
+    return userName == null ? null : userName.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Gives the lookup key of a phone number: the same number written in the national format of
+   * any market, see {@link PhoneFormat}.
+   * @param phoneNumber - phone number, may be null
+   * @return phone number as E.164 digits, null if none or not in a known format
+   */
+  public static Long normalizePhoneNumber(String phoneNumber) {
+    long phoneKey = PhoneFormat.normalizeAny(phoneNumber);
+    return phoneKey == PhoneFormat.INVALID ? null : phoneKey;
+  }
 
   /**
    * Gets id of user
    * @return user's id
    */
-  @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
   public Long getId() {
     return id;
   }
@@ -138,6 +226,15 @@ public class User implements Serializable {
    */
   public void setUserName(String userName) {
     this.userName = userName;
+    this.userNameKey = normalizeUserName(userName);
+  }
+
+  /**
+   * Gets the lookup key of user
+   * @return user's username in lower case
+   */
+  public String getUserNameKey() {
+    return userNameKey;
   }
 
   /**
@@ -224,6 +321,15 @@ public class User implements Serializable {
    */
   public void setPhoneNumber(String phoneNumber) {
     this.phoneNumber = phoneNumber;
+    this.phoneKey = normalizePhoneNumber(phoneNumber);
+  }
+
+  /**
+   * Gets the normalized phone number, maintained by {@link #setPhoneNumber(String)}.
+   * @return phone number as E.164 digits, null if none or not in a known format
+   */
+  public Long getPhoneKey() {
+    return phoneKey;
   }
 
   /**
@@ -246,6 +352,31 @@ public class User implements Serializable {
     this.gender = gender;
   }
 
+  /**
+   * Gets the time user was inserted, given by the database
+   * @return user's registration time, null if it was not read from the database
+   */
+  public Date getRegisteredAt() {
+    return registeredAt;
+  }
+
+  /**
+   * Tells if the user was built from an already validated DTO,
+   * in which case validation is skipped when it is inserted.
+   * @return true if the user is known to be valid
+   */
+  public boolean isValidated() {
+    return validated;
+  }
+
+  /**
+   * Marks the user as built from an already validated DTO.
+   * Must only be called when the DTO constraints are the same as the entity ones.
+   */
+  public void markValidated() {
+    this.validated = true;
+  }
+
   @Override
   public String toString() {
     return "User{" +
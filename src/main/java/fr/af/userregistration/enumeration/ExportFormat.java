@@ -0,0 +1,21 @@
+package fr.af.userregistration.enumeration;
+
+/**
+ * Formats of the user export.
+ * NDJSON - one JSON user per line
+ * CSV - a header line, then one line per user
+ */
+public enum ExportFormat {
+  NDJSON("application/x-ndjson"),
+  CSV("text/csv");
+
+  private final String mediaType;
+
+  ExportFormat(String mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  public String getMediaType() {
+    return mediaType;
+  }
+}
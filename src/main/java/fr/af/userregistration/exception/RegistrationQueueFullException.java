@@ -0,0 +1,22 @@
+package fr.af.userregistration.exception;
+
+/**
+ * Tells that the write-behind queue is full; it is answered with a 503 and a Retry-After header
+ * so that clients slow down instead of piling up registrations in memory.
+ * No stack trace is captured: it is thrown on every request of a burst.
+ */
+public class RegistrationQueueFullException extends RuntimeException {
+
+  private static final String QUEUE_FULL = "Too many pending registrations, retry later";
+
+  private final long retryAfterSeconds;
+
+  public RegistrationQueueFullException(long retryAfterSeconds) {
+    super(QUEUE_FULL, null, false, false);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -1,10 +1,50 @@
 package fr.af.userregistration.exception;
 
+/**
+ * Tells that a requested resource doesn't exist; it is answered with a 404.
+ * It is an expected outcome, not a failure, so no stack trace is captured, and the message of
+ * {@link #forUserName(String)} is only built when read.
+ */
 public class ResourceNotFoundException extends RuntimeException {
 
+  private static final String USER_WITH_USERNAME = "User with user name ";
+
+  private static final String NOT_FOUND = " not found";
+
+  private final String userName;
+
   public ResourceNotFoundException() {
+    this(null, null);
   }
   public ResourceNotFoundException(String message) {
-    super(message);
+    this(message, null);
+  }
+
+  private ResourceNotFoundException(String message, String userName) {
+    super(message, null, false, false);
+    this.userName = userName;
+  }
+
+  /**
+   * Creates the exception telling that no user has a username.
+   * @param userName - the unknown username
+   * @return the exception
+   */
+  public static ResourceNotFoundException forUserName(String userName) {
+    return new ResourceNotFoundException(null, userName);
+  }
+
+  /**
+   * Builds the message telling that no user has a username, for 404 responses.
+   * @param userName - the unknown username
+   * @return the message
+   */
+  public static String userNotFoundMessage(String userName) {
+    return USER_WITH_USERNAME + userName + NOT_FOUND;
+  }
+
+  @Override
+  public String getMessage() {
+    return userName == null ? super.getMessage() : userNotFoundMessage(userName);
   }
 }
@@ -0,0 +1,25 @@
+package fr.af.userregistration.exception;
+
+/**
+ * Tells that a username is already registered, ignoring case; it is answered with a 409.
+ * Like {@link ResourceNotFoundException} it is an expected outcome: no stack trace is captured
+ * and the message is only built when read.
+ */
+public class UserNameTakenException extends RuntimeException {
+
+  private static final String USER_NAME = "User name ";
+
+  private static final String TAKEN = " is already taken";
+
+  private final String userName;
+
+  public UserNameTakenException(String userName) {
+    super(null, null, false, false);
+    this.userName = userName;
+  }
+
+  @Override
+  public String getMessage() {
+    return USER_NAME + userName + TAKEN;
+  }
+}
@@ -0,0 +1,148 @@
+package fr.af.userregistration.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business counters of the registration service, published on /actuator/metrics
+ * and /actuator/prometheus.
+ */
+@Component
+public class RegistrationMetrics {
+
+  private static final String VALIDATION_FAILURES = "user.validation.failures";
+
+  private static final String FIELD = "field";
+
+  private final MeterRegistry registry;
+
+  private final Counter registrations;
+
+  private final Counter notFoundLookups;
+
+  private final Map<String, Counter> validationFailures = new ConcurrentHashMap<>();
+
+  private final Counter rejectedRequests;
+
+  private final Counter filteredAvailabilityChecks;
+
+  private final Counter databaseAvailabilityChecks;
+
+  private final Counter rejectedRegistrations;
+
+  private final DistributionSummary savedBatches;
+
+  private final DistributionSummary journalCommits;
+
+  public RegistrationMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.registrations = Counter.builder("user.registrations")
+        .description("Users registered")
+        .register(registry);
+    this.notFoundLookups = Counter.builder("user.lookups.not.found")
+        .description("Username lookups of unknown users")
+        .register(registry);
+    this.rejectedRequests = Counter.builder("user.validation.rejected.requests")
+        .description("Requests rejected for constraint violations")
+        .register(registry);
+    this.filteredAvailabilityChecks = availabilityChecks("filter");
+    this.databaseAvailabilityChecks = availabilityChecks("database");
+    this.rejectedRegistrations = Counter.builder("user.registration.queue.rejected")
+        .description("Asynchronous registrations rejected because the queue was full")
+        .register(registry);
+    this.savedBatches = DistributionSummary.builder("user.registration.queue.batches")
+        .description("Users saved together by the registration writer")
+        .register(registry);
+    this.journalCommits = DistributionSummary.builder("user.journal.commits")
+        .description("Users written and forced to the disk together by the journal")
+        .register(registry);
+  }
+
+  private Counter availabilityChecks(String source) {
+    return Counter.builder("user.availability.checks")
+        .description("Username availability checks, by source of the answer")
+        .tag("source", source)
+        .register(registry);
+  }
+
+  /**
+   * Counts registered users.
+   * @param count - number of users registered
+   */
+  public void registered(int count) {
+    registrations.increment(count);
+  }
+
+  /**
+   * Counts a lookup of an unknown username.
+   */
+  public void notFound() {
+    notFoundLookups.increment();
+  }
+
+  /**
+   * Counts a constraint violation.
+   * @param field - name of the non-valid field
+   */
+  public void validationFailed(String field) {
+    validationFailures.computeIfAbsent(field, name -> Counter.builder(VALIDATION_FAILURES)
+        .description("Constraint violations of submitted users")
+        .tag(FIELD, name)
+        .register(registry)).increment();
+  }
+
+  /**
+   * Counts a request rejected for constraint violations, each one counted by
+   * {@link #validationFailed(String)}: in fail-fast mode there is one per request.
+   */
+  public void requestRejected() {
+    rejectedRequests.increment();
+  }
+
+  /**
+   * Counts a username availability check.
+   * @param filtered - true if the filter answered alone, false if the database was read
+   */
+  public void availabilityChecked(boolean filtered) {
+    (filtered ? filteredAvailabilityChecks : databaseAvailabilityChecks).increment();
+  }
+
+  /**
+   * Publishes the number of users waiting to be saved by the registration writer.
+   * @param size - number of queued users
+   */
+  public void monitorQueue(AtomicInteger size) {
+    Gauge.builder("user.registration.queue.size", size, AtomicInteger::get)
+        .description("Users waiting to be saved by the registration writer")
+        .register(registry);
+  }
+
+  /**
+   * Counts an asynchronous registration rejected because the queue was full.
+   */
+  public void registrationRejected() {
+    rejectedRegistrations.increment();
+  }
+
+  /**
+   * Records a batch saved by the registration writer.
+   * @param size - number of users of the batch
+   */
+  public void batchSaved(int size) {
+    savedBatches.record(size);
+  }
+
+  /**
+   * Records a group of users written by the journal.
+   * @param size - number of users of the group
+   */
+  public void journalCommitted(int size) {
+    journalCommits.record(size);
+  }
+}
@@ -0,0 +1,26 @@
+package fr.af.userregistration.repository;
+
+import fr.af.userregistration.entity.IdempotencyKey;
+import java.util.Date;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+  /**
+   * Deletes the outcomes which are no longer replayed.
+   *
+   * @param before - creation date before which outcomes are deleted
+   * @return number of deleted outcomes
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from IdempotencyKey k where k.createdAt < :before")
+  int deleteCreatedBefore(@Param("before") Date before);
+
+}
@@ -0,0 +1,604 @@
+package fr.af.userregistration.repository;
+
+import fr.af.userregistration.cache.UserRecordCodec;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.UserNameTakenException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the registered users, with an in-memory index of their usernames.
+ *
+ * The journal is a series of segments, users-N.journal, each one a sequence of entries: the
+ * length and the CRC-32 of a record, then the record, a user in the layout of
+ * {@link UserRecordCodec}. The index holds the entry of each normalized username.
+ *
+ * Registrations are written by a single thread in groups: the ones which arrived while the
+ * previous group was written make the next one, written with a single gathering write and forced
+ * to the disk once (group commit). The users are only visible, and their registrations answered,
+ * once their group is on the disk.
+ *
+ * On startup the segments are read back to rebuild the index. A record torn by a crash ends the
+ * last segment, which is truncated before it. Once enough segments are full they are merged in
+ * the background into a single one, holding the last entry of each username.
+ */
+public final class UserJournal implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserJournal.class);
+
+  private static final Pattern SEGMENT = Pattern.compile("users-(\\d+)\\.journal");
+
+  private static final String COMPACTING = ".compacting";
+
+  private static final String CLOSED = "User journal is closed";
+
+  private static final int PREFIX = 2 * Integer.BYTES;
+
+  /**
+   * Longest record, a longer length read on startup is a corruption.
+   */
+  private static final int MAX_RECORD = 1 << 16;
+
+  private static final int BUFFER = 1 << 20;
+
+  /**
+   * Index entry of a username being written: taken, but not visible yet.
+   */
+  private static final byte[] RESERVED = new byte[0];
+
+  private final Path directory;
+
+  private final boolean fsync;
+
+  private final long groupCommitDelay;
+
+  private final int maxGroupSize;
+
+  private final long segmentSize;
+
+  private final int compactionSegments;
+
+  private final IntConsumer commitListener;
+
+  private final Map<String, byte[]> index = new ConcurrentHashMap<>();
+
+  private final AtomicLong lastId = new AtomicLong();
+
+  /**
+   * Appends waiting for the writer, guards {@link #closed}.
+   */
+  private final ArrayDeque<Append> pending = new ArrayDeque<>();
+
+  private boolean closed;
+
+  /**
+   * Full segments in ascending order, guarded by itself.
+   */
+  private final List<Long> fullSegments = new ArrayList<>();
+
+  private final AtomicBoolean compacting = new AtomicBoolean();
+
+  private final ExecutorService compactor = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "user-journal-compaction");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Thread writer;
+
+  /**
+   * Segment being appended to, owned by the writer.
+   */
+  private FileChannel channel;
+
+  private long segment;
+
+  /**
+   * Set when a failed write could not be undone, or the writer failed unexpectedly, the journal
+   * then refuses every write.
+   */
+  private volatile IOException failure;
+
+  /**
+   * Opens the journal of a directory, rebuilding the index from its segments.
+   * @param settings - journal settings
+   * @param commitListener - receives the number of records of each group written, before its
+   *     appends return
+   */
+  public UserJournal(UserRegistrationProperties.Persistence settings,
+      IntConsumer commitListener) throws IOException {
+    this.directory = Paths.get(settings.getJournalDirectory());
+    this.fsync = settings.isFsync();
+    this.groupCommitDelay = settings.getGroupCommitDelay().toNanos();
+    this.maxGroupSize = settings.getMaxGroupSize();
+    this.segmentSize = settings.getSegmentSize().toBytes();
+    this.compactionSegments = settings.getCompactionSegments();
+    this.commitListener = commitListener;
+    Files.createDirectories(directory);
+    long start = System.nanoTime();
+    List<Long> segments = segments();
+    int records = 0;
+    for (int i = 0; i < segments.size(); i++) {
+      records += recover(segments.get(i), i == segments.size() - 1);
+    }
+    if (segments.isEmpty()) {
+      segments.add(1L);
+    }
+    segment = segments.remove(segments.size() - 1);
+    fullSegments.addAll(segments);
+    channel = open(segment);
+    LOGGER.info("User journal recovered in {} ms: {} users from {} records in {} segments",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), index.size(), records,
+        segments.size() + 1);
+    writer = new Thread(this::write, "user-journal-writer");
+    writer.setDaemon(true);
+    writer.start();
+    compactIfNeeded();
+  }
+
+  /**
+   * Lists the segments, removing the leftovers of an interrupted compaction.
+   * @return segment numbers in ascending order
+   */
+  private List<Long> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> all = files.collect(Collectors.toList());
+      for (Path file : all) {
+        if (file.getFileName().toString().endsWith(COMPACTING)) {
+          Files.delete(file);
+        }
+      }
+      return all.stream()
+          .map(file -> SEGMENT.matcher(file.getFileName().toString()))
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private Path file(long segment) {
+    return directory.resolve("users-" + segment + ".journal");
+  }
+
+  private FileChannel open(long segment) throws IOException {
+    boolean created = !Files.exists(file(segment));
+    FileChannel opened = FileChannel.open(file(segment), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    opened.position(opened.size());
+    if (created) {
+      syncDirectory();
+    }
+    return opened;
+  }
+
+  /**
+   * Forces the creation or renaming of a segment to the disk, where supported.
+   */
+  private void syncDirectory() {
+    if (!fsync) {
+      return;
+    }
+    try (FileChannel handle = FileChannel.open(directory, StandardOpenOption.READ)) {
+      handle.force(true);
+    } catch (IOException e) {
+      LOGGER.debug("Cannot force the journal directory {}", directory, e);
+    }
+  }
+
+  /**
+   * Reads the entries of a segment into the index, up to the first incomplete or corrupted one.
+   * @param segment - segment number
+   * @param last - whether the segment was the one appended to, a torn entry is then cut off
+   * @return number of entries read
+   */
+  private int recover(long segment, boolean last) throws IOException {
+    Path file = file(segment);
+    try (FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER).flip();
+      CRC32 crc = new CRC32();
+      long valid = 0;
+      int records = 0;
+      while (fill(segmentChannel, buffer, PREFIX)) {
+        int length = buffer.getInt(buffer.position());
+        int checksum = buffer.getInt(buffer.position() + Integer.BYTES);
+        if (length <= 0 || length > MAX_RECORD || !fill(segmentChannel, buffer, PREFIX + length)) {
+          break;
+        }
+        byte[] entry = new byte[PREFIX + length];
+        buffer.get(entry);
+        crc.reset();
+        crc.update(entry, PREFIX, length);
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+        User user = UserRecordCodec.decode(ByteBuffer.wrap(entry), PREFIX);
+        index.put(User.normalizeUserName(user.getUserName()), entry);
+        lastId.accumulateAndGet(user.getId(), Math::max);
+        valid += entry.length;
+        records++;
+      }
+      long size = segmentChannel.size();
+      if (valid < size) {
+        if (last) {
+          LOGGER.warn("User journal {}: entry torn at {}, {} bytes cut off", file, valid,
+              size - valid);
+          segmentChannel.truncate(valid);
+          segmentChannel.force(false);
+        } else {
+          LOGGER.error("User journal {}: entry corrupted at {}, {} bytes ignored", file, valid,
+              size - valid);
+        }
+      }
+      return records;
+    }
+  }
+
+  /**
+   * Reads from a channel until a buffer, in read mode, has enough bytes remaining.
+   * @return false if the channel ends before
+   */
+  private static boolean fill(FileChannel source, ByteBuffer buffer, int needed)
+      throws IOException {
+    if (buffer.remaining() >= needed) {
+      return true;
+    }
+    buffer.compact();
+    while (buffer.position() < needed && source.read(buffer) >= 0) {
+      // until enough or end of file, the buffer is larger than the largest entry
+    }
+    buffer.flip();
+    return buffer.remaining() >= needed;
+  }
+
+  /**
+   * Appends users to the journal, waiting until they are written, and forced to the disk when
+   * fsync is on. The users are given their ids, and are visible once this method returns.
+   * @param users - users to register
+   * @throws UserNameTakenException if a username is already taken, none of the users is appended
+   * @throws UncheckedIOException if the journal could not be written, or can't be anymore,
+   *     none of the users is appended
+   */
+  public void append(List<User> users) {
+    if (users.isEmpty()) {
+      return;
+    }
+    String[] keys = new String[users.size()];
+    int reserved = 0;
+    try {
+      for (User user : users) {
+        String key = User.normalizeUserName(user.getUserName());
+        if (index.putIfAbsent(key, RESERVED) != null) {
+          throw new UserNameTakenException(user.getUserName());
+        }
+        keys[reserved++] = key;
+      }
+      byte[][] entries = new byte[users.size()][];
+      for (int i = 0; i < entries.length; i++) {
+        User user = users.get(i);
+        user.setId(lastId.incrementAndGet());
+        entries[i] = entry(user);
+      }
+      Append append = new Append(keys, entries);
+      synchronized (pending) {
+        if (closed) {
+          throw new IllegalStateException(CLOSED);
+        }
+        if (failure != null) {
+          throw new UncheckedIOException(failure);
+        }
+        pending.add(append);
+        if (pending.size() == 1) {
+          pending.notify();
+        }
+      }
+      append.done.join();
+    } catch (RuntimeException e) {
+      for (int i = 0; i < reserved; i++) {
+        index.remove(keys[i], RESERVED);
+      }
+      if (e instanceof CompletionException && e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static byte[] entry(User user) {
+    byte[][] texts = UserRecordCodec.texts(user);
+    int length = UserRecordCodec.size(texts);
+    if (length > MAX_RECORD) {
+      throw new IllegalArgumentException("User " + user.getUserName() + " is too large");
+    }
+    ByteBuffer entry = ByteBuffer.allocate(PREFIX + length);
+    UserRecordCodec.encode(user, texts, entry, PREFIX);
+    CRC32 crc = new CRC32();
+    crc.update(entry.array(), PREFIX, length);
+    entry.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+    return entry.array();
+  }
+
+  /**
+   * Gets a user by username, ignoring case.
+   * @param userName - username
+   * @return the user, empty if none is registered with this username
+   */
+  public Optional<User> get(String userName) {
+    byte[] entry = index.get(User.normalizeUserName(userName));
+    return entry == null || entry == RESERVED ? Optional.empty()
+        : Optional.of(UserRecordCodec.decode(ByteBuffer.wrap(entry), PREFIX));
+  }
+
+  /**
+   * Tells whether a username is taken, ignoring case, including by a registration being written.
+   * @param userName - username
+   * @return true if the username is taken
+   */
+  public boolean contains(String userName) {
+    return index.containsKey(User.normalizeUserName(userName));
+  }
+
+  /**
+   * Gets the number of users, including the ones being written.
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Writer loop: writes the pending appends as groups, until closed and all of them written.
+   */
+  private void write() {
+    List<Append> group = new ArrayList<>();
+    while (true) {
+      synchronized (pending) {
+        while (pending.isEmpty()) {
+          if (closed) {
+            return;
+          }
+          try {
+            pending.wait();
+          } catch (InterruptedException e) {
+            // only close() stops the writer, once every append is written
+          }
+        }
+      }
+      if (groupCommitDelay > 0) {
+        LockSupport.parkNanos(groupCommitDelay);
+      }
+      int records = 0;
+      synchronized (pending) {
+        while (records < maxGroupSize && !pending.isEmpty()) {
+          Append append = pending.poll();
+          group.add(append);
+          records += append.entries.length;
+        }
+      }
+      commit(group, records);
+      group.clear();
+    }
+  }
+
+  private void commit(List<Append> group, int records) {
+    try {
+      if (failure != null) {
+        throw failure;
+      }
+      ByteBuffer[] buffers = new ByteBuffer[records];
+      int i = 0;
+      for (Append append : group) {
+        for (byte[] entry : append.entries) {
+          buffers[i++] = ByteBuffer.wrap(entry);
+        }
+      }
+      long start = channel.position();
+      try {
+        while (buffers[buffers.length - 1].hasRemaining()) {
+          channel.write(buffers);
+        }
+        if (fsync) {
+          channel.force(false);
+        }
+      } catch (IOException e) {
+        undo(start, e);
+        throw e;
+      }
+      for (Append append : group) {
+        for (int j = 0; j < append.keys.length; j++) {
+          index.put(append.keys[j], append.entries[j]);
+        }
+      }
+      // before the appends return, so that the group is counted once they have
+      notifyCommit(records);
+      group.forEach(append -> append.done.complete(null));
+      if (channel.position() >= segmentSize) {
+        rotate();
+      }
+    } catch (IOException e) {
+      fail(group, new UncheckedIOException("User journal write failed", e));
+    } catch (RuntimeException | Error e) {
+      // the segment may be left in any state, and the writer must go on answering the appends
+      failure = new IOException("User journal writer failed", e);
+      LOGGER.error("User journal {} can't be written anymore", file(segment), e);
+      fail(group, new UncheckedIOException(failure));
+    }
+  }
+
+  private static void fail(List<Append> group, RuntimeException error) {
+    group.forEach(append -> append.done.completeExceptionally(error));
+  }
+
+  /**
+   * Tells the listener that a group is written, a failure of the listener not being one of
+   * the journal.
+   */
+  private void notifyCommit(int records) {
+    try {
+      commitListener.accept(records);
+    } catch (RuntimeException e) {
+      LOGGER.warn("User journal commit listener failed", e);
+    }
+  }
+
+  /**
+   * Cuts off the part of a group written before a failure, as recovery would stop at it.
+   */
+  private void undo(long start, IOException cause) {
+    try {
+      channel.truncate(start);
+      channel.position(start);
+    } catch (IOException e) {
+      e.addSuppressed(cause);
+      failure = e;
+      LOGGER.error("User journal {} can't be written anymore", file(segment), e);
+    }
+  }
+
+  private void rotate() throws IOException {
+    channel.close();
+    synchronized (fullSegments) {
+      fullSegments.add(segment);
+    }
+    channel = open(++segment);
+    compactIfNeeded();
+  }
+
+  private void compactIfNeeded() {
+    synchronized (fullSegments) {
+      if (fullSegments.size() < compactionSegments) {
+        return;
+      }
+    }
+    if (compacting.compareAndSet(false, true)) {
+      compactor.execute(this::compact);
+    }
+  }
+
+  /**
+   * Replaces the full segments by a single one, written from the index: it holds the entries of
+   * the full segments, every one of them being in the index once its segment is full, and maybe
+   * some of the segment being appended to, the same entries being read again after it.
+   * The last full segment is replaced first; until the others are deleted, a recovery reads
+   * their entries before the same ones again.
+   */
+  private void compact() {
+    try {
+      List<Long> merged;
+      synchronized (fullSegments) {
+        merged = new ArrayList<>(fullSegments);
+      }
+      long start = System.nanoTime();
+      long base = merged.get(merged.size() - 1);
+      Path temporary = directory.resolve(file(base).getFileName() + COMPACTING);
+      int records = 0;
+      try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+        for (byte[] entry : index.values()) {
+          if (entry == RESERVED) {
+            continue;
+          }
+          if (buffer.remaining() < entry.length) {
+            writeFully(compacted, buffer.flip());
+            buffer.clear();
+          }
+          buffer.put(entry);
+          records++;
+        }
+        writeFully(compacted, buffer.flip());
+        compacted.force(false);
+      }
+      Files.move(temporary, file(base), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      syncDirectory();
+      for (long older : merged.subList(0, merged.size() - 1)) {
+        Files.deleteIfExists(file(older));
+      }
+      synchronized (fullSegments) {
+        fullSegments.removeAll(merged);
+        fullSegments.add(0, base);
+      }
+      LOGGER.info("User journal compacted in {} ms: {} segments merged into {}, {} records",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), merged.size(), file(base),
+          records);
+    } catch (IOException e) {
+      LOGGER.error("User journal compaction failed", e);
+    } finally {
+      compacting.set(false);
+    }
+  }
+
+  private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+  }
+
+  /**
+   * Writes the pending appends then closes the journal, waiting for a running compaction.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (pending) {
+      closed = true;
+      pending.notify();
+    }
+    try {
+      writer.join();
+      compactor.shutdown();
+      compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+
+  /**
+   * Users of a registration, waiting to be written.
+   */
+  private static final class Append {
+
+    private final String[] keys;
+
+    private final byte[][] entries;
+
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private Append(String[] keys, byte[][] entries) {
+      this.keys = keys;
+      this.entries = entries;
+    }
+  }
+}
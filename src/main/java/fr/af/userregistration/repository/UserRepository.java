@@ -1,12 +1,108 @@
 package fr.af.userregistration.repository;
 
 import fr.af.userregistration.entity.User;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-  Optional<User> findUserByUserName(String userName);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+
+  /**
+   * Finds a user through the unique index on its normalized username.
+   * Only the columns exposed by UserDTO are read and the returned user is not managed.
+   *
+   * @param userNameKey - username normalized by {@link User#normalizeUserName(String)}
+   * @return read-only user
+   */
+  @Query("select new fr.af.userregistration.entity.User(u.id, u.userName, u.firstName,"
+      + " u.lastName, u.residenceCountry, u.birthDate, u.phoneNumber, u.gender)"
+      + " from User u where u.userNameKey = :userNameKey")
+  Optional<User> findUserByUserNameKey(@Param("userNameKey") String userNameKey);
+
+  /**
+   * Reads the users whose id is in (afterId, upToId], in id order, one page at a time.
+   * Each page starts from the last id of the previous one (keyset pagination) so that it is
+   * an index range scan, however far the export goes.
+   * The returned users are not managed.
+   *
+   * @param afterId - last id of the previous page, excluded
+   * @param upToId - highest id to read, included
+   * @param page - the size of the page, its number must be 0
+   * @return read-only users
+   */
+  @Query("select new fr.af.userregistration.entity.User(u.id, u.userName, u.firstName,"
+      + " u.lastName, u.residenceCountry, u.birthDate, u.phoneNumber, u.gender)"
+      + " from User u where u.id > :afterId and u.id <= :upToId order by u.id")
+  List<User> findUsersAfter(@Param("afterId") long afterId, @Param("upToId") long upToId,
+      Pageable page);
+
+  /**
+   * Reads the users with the given ids, in no particular order.
+   * The returned users are not managed.
+   *
+   * @param ids - ids of the users
+   * @return read-only users
+   */
+  @Query("select new fr.af.userregistration.entity.User(u.id, u.userName, u.firstName,"
+      + " u.lastName, u.residenceCountry, u.birthDate, u.phoneNumber, u.gender)"
+      + " from User u where u.id in :ids")
+  List<User> findUsersByIds(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Finds the users through the index on their normalized phone number.
+   * The returned users are not managed.
+   *
+   * @param phoneKey - phone number normalized by {@link User#normalizePhoneNumber(String)}
+   * @param page - the size of the page, its number must be 0
+   * @return read-only users, in id order
+   */
+  @Query("select new fr.af.userregistration.entity.User(u.id, u.userName, u.firstName,"
+      + " u.lastName, u.residenceCountry, u.birthDate, u.phoneNumber, u.gender)"
+      + " from User u where u.phoneKey = :phoneKey order by u.id")
+  List<User> findUsersByPhoneKey(@Param("phoneKey") long phoneKey, Pageable page);
+
+  /**
+   * Reads the users registered in (after, upTo], in registration order, one page at a time.
+   * Users registered at the same time are ordered by id, and each page starts from the
+   * registration time and the id of the last user of the previous one (keyset pagination), so
+   * that it is a range scan of ix_user_registered_at.
+   * The returned users are not managed.
+   *
+   * @param after - registration time of the last user of the previous page
+   * @param afterId - id of the last user of the previous page, Long.MAX_VALUE for the first one
+   * @param upTo - latest registration time to read, included
+   * @param page - the size of the page, its number must be 0
+   * @return read-only users, with their registration time
+   */
+  @Query("select new fr.af.userregistration.entity.User(u.id, u.userName, u.firstName,"
+      + " u.lastName, u.residenceCountry, u.birthDate, u.phoneNumber, u.gender, u.registeredAt)"
+      + " from User u where (u.registeredAt > :after"
+      + " or (u.registeredAt = :after and u.id > :afterId))"
+      + " and u.registeredAt <= :upTo order by u.registeredAt, u.id")
+  List<User> findUsersRegisteredAfter(@Param("after") Date after, @Param("afterId") long afterId,
+      @Param("upTo") Date upTo, Pageable page);
+
+  /**
+   * Gets the current time of the database, the clock of {@link User#getRegisteredAt()}.
+   *
+   * @return current time of the database
+   */
+  @Query(value = "select localtimestamp", nativeQuery = true)
+  Date findDatabaseTime();
+
+  /**
+   * Gets the highest id given to a user.
+   *
+   * @return highest id, empty if there is no user
+   */
+  @Query("select max(u.id) from User u")
+  Optional<Long> findMaxId();
 
 }
@@ -0,0 +1,25 @@
+package fr.af.userregistration.repository;
+
+import fr.af.userregistration.entity.User;
+import java.util.List;
+
+/**
+ * Bulk operations of {@link UserRepository} written with plain JDBC.
+ */
+public interface UserRepositoryCustom {
+
+  /**
+   * Inserts users keeping their ids, in one JDBC batch and one transaction.
+   * Unlike save, no id is generated and no select is made beforehand.
+   *
+   * @param users - users with an id
+   */
+  void insertUsers(List<User> users);
+
+  /**
+   * Moves the user id sequence so that the next generated ids are higher than the given one.
+   *
+   * @param id - highest id already given
+   */
+  void restartIdsAfter(long id);
+}
@@ -0,0 +1,66 @@
+package fr.af.userregistration.repository;
+
+import fr.af.userregistration.entity.User;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JDBC implementation of {@link UserRepositoryCustom}, merged into {@link UserRepository} by
+ * Spring Data.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+  private static final String INSERT = "insert into \"user\" (id, user_name, user_name_key,"
+      + " first_name, last_name, residence_country, birth_date, phone_number, phone_key, gender)"
+      + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  /**
+   * Ids handed out by one call to the sequence, see the allocationSize of {@link User#getId()}.
+   */
+  private static final long ID_ALLOCATION = 50;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public UserRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  @Transactional
+  public void insertUsers(List<User> users) {
+    jdbcTemplate.batchUpdate(INSERT, users, users.size(), (statement, user) -> {
+      statement.setLong(1, user.getId());
+      statement.setString(2, user.getUserName());
+      statement.setString(3, User.normalizeUserName(user.getUserName()));
+      statement.setString(4, user.getFirstName());
+      statement.setString(5, user.getLastName());
+      statement.setString(6, user.getResidenceCountry());
+      if (user.getBirthDate() == null) {
+        statement.setNull(7, Types.DATE);
+      } else {
+        statement.setDate(7, new Date(user.getBirthDate().getTime()));
+      }
+      statement.setString(8, user.getPhoneNumber());
+      Long phoneKey = User.normalizePhoneNumber(user.getPhoneNumber());
+      if (phoneKey == null) {
+        statement.setNull(9, Types.BIGINT);
+      } else {
+        statement.setLong(9, phoneKey);
+      }
+      statement.setString(10, user.getGender() == null ? null : user.getGender().name());
+    });
+  }
+
+  /**
+   * The pooled optimizer of Hibernate hands out the ids up to the value read from the sequence,
+   * so the sequence restarts one allocation after the id.
+   */
+  @Override
+  @Transactional
+  public void restartIdsAfter(long id) {
+    jdbcTemplate.execute("alter sequence user_seq restart with " + (id + ID_ALLOCATION));
+  }
+}
@@ -0,0 +1,110 @@
+package fr.af.userregistration.service.implementation;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.repository.UserJournal;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Registers the users in an append-only journal instead of the database, enabled by
+ * user-registration.persistence.engine=journal, see {@link UserJournal}.
+ * A registration is an append shared with the concurrent ones, forced to the disk once per group,
+ * instead of a database transaction; lookups are answered by the index of the journal, rebuilt
+ * on startup. The users are not saved in the database, which search and export still read.
+ */
+@Service
+@ConditionalOnProperty(prefix = "user-registration.persistence", name = "engine",
+    havingValue = "journal")
+public class JournalUserServiceImpl implements IUserService, DisposableBean {
+  private UserJournal userJournal;
+
+  private RegistrationMetrics registrationMetrics;
+
+  public JournalUserServiceImpl(UserRegistrationProperties properties,
+      RegistrationMetrics registrationMetrics) throws IOException {
+    this.userJournal = new UserJournal(properties.getPersistence(),
+        registrationMetrics::journalCommitted);
+    this.registrationMetrics = registrationMetrics;
+  }
+
+  /**
+   * this method allows the creation of a new user.
+   * It returns once the user is written to the journal, and forced to the disk when fsync is on.
+   * @param user - should be valid
+   * @return new created user
+   * @throws UserNameTakenException if the username is already registered
+   */
+  @Override
+  public User createUser(User user) {
+    userJournal.append(Collections.singletonList(user));
+    registrationMetrics.registered(1);
+    return user;
+  }
+
+  /**
+   * this method allows the creation of several users at once, written to the journal as a whole.
+   * @param users - should be valid
+   * @return new created users
+   * @throws UserNameTakenException if a username is already registered, none is created
+   */
+  @Override
+  public List<User> createUsers(List<User> users) {
+    userJournal.append(users);
+    registrationMetrics.registered(users.size());
+    return users;
+  }
+
+  /**
+   * this method return user's detail by their username, ignoring case.
+   * @param userName - user's username
+   * @return user's details, empty if no user has this username
+   */
+  @Override
+  public Optional<User> findUserByUserName(String userName) {
+    Optional<User> user = userJournal.get(userName);
+    if (user.isEmpty()) {
+      registrationMetrics.notFound();
+    }
+    return user;
+  }
+
+  /**
+   * this method return user's detail by their username, ignoring case.
+   * @param userName - user's username
+   * @return user's details
+   * @throws ResourceNotFoundException - User with the corresponding username doesn't exist
+   */
+  @Override
+  public User getUserByUserName(String userName) throws ResourceNotFoundException {
+    return findUserByUserName(userName)
+        .orElseThrow(() -> ResourceNotFoundException.forUserName(userName));
+  }
+
+  /**
+   * this method tells whether a username is still free, ignoring case.
+   * @param userName - username to check
+   * @return true if no user has this username, nor is being registered with it
+   */
+  @Override
+  public boolean isUserNameAvailable(String userName) {
+    return !userJournal.contains(userName);
+  }
+
+  /**
+   * Writes the pending registrations before closing the journal.
+   */
+  @Override
+  public void destroy() throws IOException {
+    userJournal.close();
+  }
+}
@@ -0,0 +1,143 @@
+package fr.af.userregistration.service.implementation;
+
+import fr.af.userregistration.cache.UserCache;
+import fr.af.userregistration.cache.UserNameFilter;
+import fr.af.userregistration.cache.UserRecordStore;
+import fr.af.userregistration.cache.UserSearchIndex;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.interfaces.IReactiveUserService;
+import io.r2dbc.spi.Row;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reads and writes users through R2DBC, on the tables created by the JPA mapping of
+ * {@link User}.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveUserServiceImpl implements IReactiveUserService {
+
+  private static final String INSERT = "insert into \"user\" (id, user_name, user_name_key,"
+      + " first_name, last_name, residence_country, birth_date, phone_number, phone_key, gender)"
+      + " values (next value for user_seq, :userName, :userNameKey, :firstName, :lastName,"
+      + " :residenceCountry, :birthDate, :phoneNumber, :phoneKey, :gender)";
+
+  private static final String SELECT_BY_USER_NAME_KEY = "select id, user_name, first_name,"
+      + " last_name, residence_country, birth_date, phone_number, gender from \"user\""
+      + " where user_name_key = :userNameKey";
+
+  private DatabaseClient databaseClient;
+
+  private UserCache userCache;
+
+  private UserNameFilter userNameFilter;
+
+  private UserSearchIndex userSearchIndex;
+
+  private UserRecordStore userRecordStore;
+
+  private RegistrationMetrics registrationMetrics;
+
+  public ReactiveUserServiceImpl(DatabaseClient databaseClient, UserCache userCache,
+      UserNameFilter userNameFilter, UserSearchIndex userSearchIndex,
+      UserRecordStore userRecordStore, RegistrationMetrics registrationMetrics) {
+    this.databaseClient = databaseClient;
+    this.userCache = userCache;
+    this.userNameFilter = userNameFilter;
+    this.userSearchIndex = userSearchIndex;
+    this.userRecordStore = userRecordStore;
+    this.registrationMetrics = registrationMetrics;
+  }
+
+  /**
+   * this method allows the creation of a new user.
+   * The id is taken from the same sequence as the JPA mapping: each value is the upper bound of
+   * a block of 50 ids for Hibernate, so a value used directly never collides with them.
+   * The new user is added to the same caches and indexes as the users registered through JPA,
+   * on the bounded elastic scheduler: the record store may write its change log or wait for
+   * free space, which must not block the event loop.
+   * @param user - should be valid
+   * @return new created user, with its id, or a DataIntegrityViolationException error if the
+   *     username is already taken
+   */
+  @Override
+  public Mono<User> createUser(User user) {
+    GenericExecuteSpec insert = databaseClient.sql(INSERT);
+    insert = bind(insert, "userName", user.getUserName(), String.class);
+    insert = bind(insert, "userNameKey", user.getUserNameKey(), String.class);
+    insert = bind(insert, "firstName", user.getFirstName(), String.class);
+    insert = bind(insert, "lastName", user.getLastName(), String.class);
+    insert = bind(insert, "residenceCountry", user.getResidenceCountry(), String.class);
+    insert = bind(insert, "birthDate", toLocalDate(user.getBirthDate()), LocalDate.class);
+    insert = bind(insert, "phoneNumber", user.getPhoneNumber(), String.class);
+    insert = bind(insert, "phoneKey", user.getPhoneKey(), Long.class);
+    insert = bind(insert, "gender", user.getGender() == null ? null : user.getGender().name(),
+        String.class);
+    return insert.filter(statement -> statement.returnGeneratedValues("id"))
+        .map(row -> row.get("id", Long.class))
+        .one()
+        .publishOn(Schedulers.boundedElastic())
+        .map(id -> {
+          user.setId(id);
+          userCache.invalidate(user.getUserName());
+          userNameFilter.add(user.getUserName(), id);
+          userSearchIndex.add(user);
+          userRecordStore.put(user);
+          registrationMetrics.registered(1);
+          return user;
+        });
+  }
+
+  /**
+   * this method return user's detail by their username, ignoring case.
+   * @param userName - user's username
+   * @return user's details, or a ResourceNotFoundException error if the user doesn't exist
+   */
+  @Override
+  public Mono<User> getUserByUserName(String userName) {
+    return databaseClient.sql(SELECT_BY_USER_NAME_KEY)
+        .bind("userNameKey", User.normalizeUserName(userName))
+        .map(ReactiveUserServiceImpl::toUser)
+        .one()
+        .switchIfEmpty(Mono.defer(() -> {
+          registrationMetrics.notFound();
+          return Mono.error(ResourceNotFoundException.forUserName(userName));
+        }));
+  }
+
+  private static <T> GenericExecuteSpec bind(GenericExecuteSpec spec, String name, T value,
+      Class<T> type) {
+    return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+  }
+
+  private static LocalDate toLocalDate(java.util.Date date) {
+    if (date == null) {
+      return null;
+    }
+    if (date instanceof Date) {
+      return ((Date) date).toLocalDate();
+    }
+    return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+  }
+
+  private static User toUser(Row row) {
+    LocalDate birthDate = row.get("birth_date", LocalDate.class);
+    String gender = row.get("gender", String.class);
+    return new User(row.get("id", Long.class), row.get("user_name", String.class),
+        row.get("first_name", String.class), row.get("last_name", String.class),
+        row.get("residence_country", String.class),
+        birthDate == null ? null : Date.valueOf(birthDate),
+        row.get("phone_number", String.class), gender == null ? null : Gender.valueOf(gender));
+  }
+}
@@ -0,0 +1,138 @@
+package fr.af.userregistration.service.implementation;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.dto.BatchReportDTO;
+import fr.af.userregistration.dto.BatchReportDTO.Item;
+import fr.af.userregistration.dto.BatchReportDTO.Status;
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.interfaces.IUserBatchService;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserBatchServiceImpl implements IUserBatchService {
+
+  private static final String REQUEST = "request";
+
+  private IUserService userService;
+
+  private Validator validator;
+
+  private ObjectReader userReader;
+
+  private int batchSize;
+
+  private RegistrationMetrics registrationMetrics;
+
+  public UserBatchServiceImpl(IUserService userService, Validator validator,
+      ObjectMapper objectMapper, UserRegistrationProperties properties,
+      RegistrationMetrics registrationMetrics) {
+    this.userService = userService;
+    this.validator = validator;
+    this.userReader = objectMapper.readerFor(UserDTO.class);
+    this.batchSize = properties.getBatch().getSize();
+    this.registrationMetrics = registrationMetrics;
+  }
+
+  /**
+   * this method registers every user of a JSON array or of a NDJSON stream.
+   * Users are read one by one and persisted by batches, so the request is never
+   * materialized in memory.
+   * @param users - JSON array or newline delimited JSON users
+   * @return outcome of each user
+   * @throws IOException if the request can't be read
+   */
+  @Override
+  public BatchReportDTO importUsers(InputStream users) throws IOException {
+    BatchReportDTO report = new BatchReportDTO();
+    List<User> batch = new ArrayList<>(batchSize);
+    List<Integer> batchIndexes = new ArrayList<>(batchSize);
+    int index = 0;
+    try (MappingIterator<UserDTO> iterator = userReader.readValues(users)) {
+      while (iterator.hasNext()) {
+        UserDTO user = iterator.next();
+        Map<String, String> errors = validate(user);
+        if (!errors.isEmpty()) {
+          report.addItem(new Item(index++, user.getUserName(), null, Status.INVALID, errors));
+          continue;
+        }
+        User newUser = fr.af.userregistration.util.ObjectMapper.map(user, User.class);
+        newUser.markValidated();
+        batch.add(newUser);
+        batchIndexes.add(index++);
+        if (batch.size() >= batchSize) {
+          flush(batch, batchIndexes, report);
+        }
+      }
+    } catch (RuntimeException e) {
+      flush(batch, batchIndexes, report);
+      report.addItem(new Item(index, null, null, Status.INVALID,
+          Collections.singletonMap(REQUEST, e.getMessage())));
+      return report;
+    }
+    flush(batch, batchIndexes, report);
+    return report;
+  }
+
+  private Map<String, String> validate(UserDTO user) {
+    Set<ConstraintViolation<UserDTO>> violations = validator.validate(user);
+    if (violations.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> errors = new LinkedHashMap<>();
+    violations.forEach(violation -> {
+      String field = violation.getPropertyPath().toString();
+      errors.put(field, violation.getMessage());
+      registrationMetrics.validationFailed(field);
+    });
+    return errors;
+  }
+
+  /**
+   * Persists the pending batch. When the batch is rejected (a duplicate username for instance)
+   * its users are saved one by one so that each one gets its own outcome.
+   */
+  private void flush(List<User> batch, List<Integer> batchIndexes, BatchReportDTO report) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      List<User> created = userService.createUsers(batch);
+      for (int i = 0; i < created.size(); i++) {
+        User user = created.get(i);
+        report.addItem(
+            new Item(batchIndexes.get(i), user.getUserName(), user.getId(), Status.CREATED, null));
+      }
+    } catch (RuntimeException batchError) {
+      for (int i = 0; i < batch.size(); i++) {
+        User user = batch.get(i);
+        user.setId(null);
+        try {
+          User created = userService.createUser(user);
+          report.addItem(new Item(batchIndexes.get(i), created.getUserName(), created.getId(),
+              Status.CREATED, null));
+        } catch (Exception e) {
+          report.addItem(new Item(batchIndexes.get(i), user.getUserName(), null, Status.FAILED,
+              Collections.singletonMap(REQUEST, e.getMessage())));
+        }
+      }
+    }
+    batch.clear();
+    batchIndexes.clear();
+  }
+}
@@ -0,0 +1,172 @@
+package fr.af.userregistration.service.implementation;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.ExportFormat;
+import fr.af.userregistration.repository.UserRepository;
+import fr.af.userregistration.service.interfaces.IUserExportService;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserExportServiceImpl implements IUserExportService {
+
+  private static final String CSV_HEADER =
+      "id,userName,firstName,lastName,residenceCountry,birthDate,phoneNumber,gender";
+
+  private UserRepository userRepository;
+
+  private ObjectMapper objectMapper;
+
+  private ObjectWriter userWriter;
+
+  private Pageable page;
+
+  private long commitLag;
+
+  public UserExportServiceImpl(UserRepository userRepository, ObjectMapper objectMapper,
+      UserRegistrationProperties properties) {
+    this.userRepository = userRepository;
+    this.objectMapper = objectMapper;
+    this.userWriter = objectMapper.writerFor(UserDTO.class);
+    this.page = PageRequest.of(0, properties.getExport().getPageSize());
+    this.commitLag = properties.getExport().getCommitLag().toMillis();
+  }
+
+  /**
+   * this method returns the registration time up to which users are exported, to be passed as
+   * the upper bound of an export. The next incremental export starts from it.
+   * It lags behind the clock of the database by user-registration.export.commit-lag, so that
+   * every user registered before it is committed: users are registered in a transaction, at
+   * its start, and may be committed out of order.
+   * @return registration time, in milliseconds since the epoch
+   */
+  @Override
+  public long getWatermark() {
+    return userRepository.findDatabaseTime().getTime() - commitLag;
+  }
+
+  /**
+   * this method writes users in registration order, from the database to the output, page by
+   * page. Only one page is held in memory and the output is flushed after each page.
+   * Consecutive exports, each one starting from the watermark of the previous one, write every
+   * user exactly once.
+   * @param since - the users registered later are exported, in milliseconds since the epoch
+   * @param upTo - the users registered later are not exported, see {@link #getWatermark()}
+   * @param format - format of the output
+   * @param out - destination of the users, not closed
+   * @throws IOException if the output can't be written
+   */
+  @Override
+  public void exportUsers(long since, long upTo, ExportFormat format, OutputStream out)
+      throws IOException {
+    if (format == ExportFormat.CSV) {
+      exportCsv(since, upTo, out);
+    } else {
+      exportNdjson(since, upTo, out);
+    }
+  }
+
+  private void exportNdjson(long since, long upTo, OutputStream out) throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory()
+        .createGenerator(out, JsonEncoding.UTF8)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        .setRootValueSeparator(null)) {
+      List<User> users = firstPage(since, upTo);
+      while (!users.isEmpty()) {
+        for (User user : users) {
+          userWriter.writeValue(generator,
+              fr.af.userregistration.util.ObjectMapper.map(user, UserDTO.class));
+          generator.writeRaw('\n');
+        }
+        generator.flush();
+        users = nextPage(users, upTo);
+      }
+    }
+  }
+
+  private void exportCsv(long since, long upTo, OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    writer.write(CSV_HEADER);
+    writer.write('\n');
+    List<User> users = firstPage(since, upTo);
+    while (!users.isEmpty()) {
+      for (User user : users) {
+        writer.write(String.valueOf(user.getId()));
+        writeCsv(writer, user.getUserName());
+        writeCsv(writer, user.getFirstName());
+        writeCsv(writer, user.getLastName());
+        writeCsv(writer, user.getResidenceCountry());
+        writeCsv(writer, formatDate(user.getBirthDate()));
+        writeCsv(writer, user.getPhoneNumber());
+        writeCsv(writer, user.getGender() == null ? null : user.getGender().name());
+        writer.write('\n');
+      }
+      writer.flush();
+      users = nextPage(users, upTo);
+    }
+    writer.flush();
+  }
+
+  private List<User> firstPage(long since, long upTo) {
+    return userRepository.findUsersRegisteredAfter(new Date(since), Long.MAX_VALUE,
+        new Date(upTo), page);
+  }
+
+  private List<User> nextPage(List<User> users, long upTo) {
+    if (users.size() < page.getPageSize()) {
+      return List.of();
+    }
+    User last = users.get(users.size() - 1);
+    return userRepository.findUsersRegisteredAfter(last.getRegisteredAt(), last.getId(),
+        new Date(upTo), page);
+  }
+
+  /**
+   * Writes a field preceded by its separator, quoted when it contains a separator, a quote or a
+   * line break (RFC 4180). A null field is left empty.
+   */
+  private static void writeCsv(Writer writer, String value) throws IOException {
+    writer.write(',');
+    if (value == null) {
+      return;
+    }
+    boolean quoted = false;
+    for (int i = 0; i < value.length() && !quoted; i++) {
+      char c = value.charAt(i);
+      quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quoted) {
+      writer.write(value);
+      return;
+    }
+    writer.write('"');
+    writer.write(value.replace("\"", "\"\""));
+    writer.write('"');
+  }
+
+  private static String formatDate(Date date) {
+    if (date == null) {
+      return null;
+    }
+    if (date instanceof java.sql.Date) {
+      return date.toString();
+    }
+    return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString();
+  }
+}
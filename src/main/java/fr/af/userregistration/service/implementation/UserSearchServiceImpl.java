@@ -0,0 +1,95 @@
+package fr.af.userregistration.service.implementation;
+
+import fr.af.userregistration.cache.UserSearchIndex;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.dto.UserSearchDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import fr.af.userregistration.service.interfaces.IUserSearchService;
+import fr.af.userregistration.util.ObjectMapper;
+import fr.af.userregistration.validator.PhoneFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserSearchServiceImpl implements IUserSearchService {
+
+  private UserSearchIndex userSearchIndex;
+
+  private UserRepository userRepository;
+
+  private int pageSize;
+
+  private int maxPageSize;
+
+  private int maxResults;
+
+  public UserSearchServiceImpl(UserSearchIndex userSearchIndex, UserRepository userRepository,
+      UserRegistrationProperties properties) {
+    this.userSearchIndex = userSearchIndex;
+    this.userRepository = userRepository;
+    this.pageSize = properties.getSearch().getPageSize();
+    this.maxPageSize = properties.getSearch().getMaxPageSize();
+    this.maxResults = properties.getSearch().getMaxResults();
+  }
+
+  /**
+   * this method returns one page of the users whose username, first name, last name or full name
+   * starts with the query, ignoring case and accents.
+   * Ids come from {@link UserSearchIndex}, the users of the page are then read in one query.
+   * @param query - beginning of a username or of a name
+   * @param page - number of the page, starting at 0
+   * @param size - number of users of the page, the configured default if not positive
+   * @return the page, empty beyond user-registration.search.max-results users
+   */
+  @Override
+  public UserSearchDTO searchUsers(String query, int page, int size) {
+    int limit = size <= 0 ? pageSize : Math.min(size, maxPageSize);
+    long offset = (long) Math.max(page, 0) * limit;
+    if (offset >= maxResults) {
+      return new UserSearchDTO(query, page, limit, false, List.of());
+    }
+    int reachable = (int) Math.min(limit, maxResults - offset);
+    List<Long> ids = userSearchIndex.search(query, (int) offset, reachable + 1);
+    boolean hasMore = ids.size() > reachable && offset + reachable < maxResults;
+    if (ids.size() > reachable) {
+      ids = ids.subList(0, reachable);
+    }
+    Map<Long, User> users = new HashMap<>();
+    if (!ids.isEmpty()) {
+      userRepository.findUsersByIds(ids).forEach(user -> users.put(user.getId(), user));
+    }
+    List<UserDTO> found = new ArrayList<>(ids.size());
+    ids.forEach(id -> {
+      User user = users.get(id);
+      if (user != null) {
+        found.add(ObjectMapper.map(user, UserDTO.class));
+      }
+    });
+    return new UserSearchDTO(query, page, limit, hasMore, found);
+  }
+
+  /**
+   * this method returns the users registered with a phone number, whatever the national format
+   * it is written in, through the index on the normalized phone numbers.
+   * @param phoneNumber - phone number in one of the national formats of {@link PhoneFormat}
+   * @return the first user-registration.search.max-page-size users, in registration order,
+   *     none if the number is not in a known format
+   */
+  @Override
+  public List<UserDTO> findUsersByPhoneNumber(String phoneNumber) {
+    Long phoneKey = User.normalizePhoneNumber(phoneNumber);
+    if (phoneKey == null) {
+      return List.of();
+    }
+    List<UserDTO> found = new ArrayList<>();
+    userRepository.findUsersByPhoneKey(phoneKey, PageRequest.of(0, maxPageSize))
+        .forEach(user -> found.add(ObjectMapper.map(user, UserDTO.class)));
+    return found;
+  }
+}
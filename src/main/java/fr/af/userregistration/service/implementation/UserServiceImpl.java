@@ -1,35 +1,72 @@
 package fr.af.userregistration.service.implementation;
 
+import fr.af.userregistration.cache.UserCache;
+import fr.af.userregistration.cache.UserNameFilter;
+import fr.af.userregistration.cache.UserRecordStore;
+import fr.af.userregistration.cache.UserSearchIndex;
 import fr.af.userregistration.entity.User;
 import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
 import fr.af.userregistration.repository.UserRepository;
 import fr.af.userregistration.service.interfaces.IUserService;
+import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 @Service
+@ConditionalOnProperty(prefix = "user-registration.persistence", name = "engine",
+    havingValue = "jpa", matchIfMissing = true)
 public class UserServiceImpl implements IUserService {
   private UserRepository userRepository;
 
-  public UserServiceImpl(UserRepository userRepository) {
-    this.userRepository = userRepository;
-  }
+  private EntityManager entityManager;
+
+  private UserCache userCache;
+
+  private UserNameFilter userNameFilter;
 
-  private static final String USER_WITH_USERNAME = "User with user name ";
+  private UserSearchIndex userSearchIndex;
 
-  private static final String NOT_FOUND = " not found";
+  private UserRecordStore userRecordStore;
 
+  private RegistrationMetrics registrationMetrics;
+
+  public UserServiceImpl(UserRepository userRepository, EntityManager entityManager,
+      UserCache userCache, UserNameFilter userNameFilter, UserSearchIndex userSearchIndex,
+      UserRecordStore userRecordStore, RegistrationMetrics registrationMetrics) {
+    this.userRepository = userRepository;
+    this.entityManager = entityManager;
+    this.userCache = userCache;
+    this.userNameFilter = userNameFilter;
+    this.userSearchIndex = userSearchIndex;
+    this.userRecordStore = userRecordStore;
+    this.registrationMetrics = registrationMetrics;
+  }
 
   /**
-   * this method allows the creation of a new user
-    * @param user - should be valid
+   * this method allows the creation of a new user.
+   * A username already taken is detected before the insert, see
+   * {@link #isUserNameAvailable(String)}; the unique index remains the last guard.
+   * @param user - should be valid
    * @return new created user
+   * @throws UserNameTakenException if the username is already registered
    * @throws Exception if error in saving user
    */
   @Override
   public User createUser(User user) throws Exception{
+    if (!isUserNameAvailable(user.getUserName())) {
+      throw new UserNameTakenException(user.getUserName());
+    }
     try {
       User newUser = userRepository.save(user);
+      userCache.invalidate(newUser.getUserName());
+      userNameFilter.add(newUser.getUserName(), newUser.getId());
+      userSearchIndex.add(newUser);
+      userRecordStore.put(newUser);
+      registrationMetrics.registered(1);
       return newUser;
     } catch (Exception e){
       throw e;
@@ -37,18 +74,78 @@ public class UserServiceImpl implements IUserService {
   }
 
   /**
-   * this method return user's detail by their username
+   * this method allows the creation of several users at once.
+   * Users are inserted with JDBC batching in a single transaction, then detached
+   * so that the persistence context does not grow with the size of the import.
+   * @param users - should be valid
+   * @return new created users
+   */
+  @Override
+  public List<User> createUsers(List<User> users) {
+    List<User> newUsers = userRepository.saveAllAndFlush(users);
+    entityManager.clear();
+    newUsers.forEach(newUser -> {
+      userCache.invalidate(newUser.getUserName());
+      userNameFilter.add(newUser.getUserName(), newUser.getId());
+      userSearchIndex.add(newUser);
+      userRecordStore.put(newUser);
+    });
+    registrationMetrics.registered(newUsers.size());
+    return newUsers;
+  }
+
+  /**
+   * this method return user's detail by their username, ignoring case.
+   * Lookups, including the ones of unknown usernames, are served from {@link UserRecordStore}
+   * when it is enabled, from {@link UserCache} otherwise.
+   * @param userName - user's username
+   * @return user's details, empty if no user has this username
+   */
+  @Override
+  public Optional<User> findUserByUserName(String userName) {
+    Optional<User> user = lookup(userName);
+    if (user.isEmpty()) {
+      registrationMetrics.notFound();
+    }
+    return user;
+  }
+
+  /**
+   * this method return user's detail by their username, ignoring case.
+   * Prefer {@link #findUserByUserName(String)} when a missing user is an expected outcome.
    * @param userName - user's username
    * @return user's details
    * @throws ResourceNotFoundException - User with the corresponding username doesn't exist
    */
   @Override
   public User getUserByUserName(String userName) throws ResourceNotFoundException {
+    return findUserByUserName(userName)
+        .orElseThrow(() -> ResourceNotFoundException.forUserName(userName));
+  }
 
-    Optional<User> user = userRepository.findUserByUserName(userName);
-    if(user.isPresent()){
-      return user.get();
+  /**
+   * this method tells whether a username is still free, ignoring case.
+   * When enabled, {@link UserRecordStore} answers alone since it holds every user, restored ones
+   * included. Otherwise most free usernames are answered by {@link UserNameFilter} alone, the
+   * other ones are looked up like {@link #findUserByUserName(String)}.
+   * @param userName - username to check
+   * @return true if no user has this username
+   */
+  @Override
+  public boolean isUserNameAvailable(String userName) {
+    if (userRecordStore.isEnabled()) {
+      return !userRecordStore.contains(userName);
     }
-    throw new ResourceNotFoundException(USER_WITH_USERNAME + userName + NOT_FOUND);
+    if (!userNameFilter.mightBeTaken(userName)) {
+      registrationMetrics.availabilityChecked(true);
+      return true;
+    }
+    registrationMetrics.availabilityChecked(false);
+    return lookup(userName).isEmpty();
+  }
+
+  private Optional<User> lookup(String userName) {
+    return userRecordStore.isEnabled() ? userRecordStore.get(userName)
+        : userCache.get(userName, userRepository::findUserByUserNameKey);
   }
 }
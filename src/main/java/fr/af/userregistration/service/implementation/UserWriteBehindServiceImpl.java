@@ -0,0 +1,297 @@
+package fr.af.userregistration.service.implementation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.dto.RegistrationTicketDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.RegistrationQueueFullException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.interfaces.IUserService;
+import fr.af.userregistration.service.interfaces.IUserWriteBehindService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+/**
+ * Asynchronous registrations. When user-registration.write-behind.enabled is set, users are
+ * queued and a single writer thread saves them by batches of up to max-batch-size users, one
+ * transaction per batch, waiting at most max-latency for a batch to fill up.
+ * The queue is bounded by queue-capacity users, queued or being saved: beyond it registrations
+ * are rejected so that a burst can't exhaust the memory.
+ * The tickets of the queued users are kept until they are saved, then up to completed-tickets
+ * outcomes are kept for ticket-ttl.
+ * The writer is stopped after the web server on shutdown, once every queued user is saved.
+ */
+@Service
+public class UserWriteBehindServiceImpl implements IUserWriteBehindService, SmartLifecycle {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserWriteBehindServiceImpl.class);
+
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static final long RETRY_AFTER_SECONDS = 1;
+
+  private IUserService userService;
+
+  private RegistrationMetrics registrationMetrics;
+
+  private final boolean enabled;
+
+  private final int queueCapacity;
+
+  private final int maxBatchSize;
+
+  private final long maxLatencyNanos;
+
+  /**
+   * Tickets of the users queued or being saved, bounded by the queue.
+   */
+  private final Map<String, RegistrationTicketDTO> pendingTickets = new ConcurrentHashMap<>();
+
+  /**
+   * Tickets of the users saved or failed, from their completion.
+   */
+  private final Cache<String, RegistrationTicketDTO> tickets;
+
+  private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Number of users queued or being saved, reserved before being queued.
+   */
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Normalized usernames queued or being saved, so that a username is only queued once.
+   */
+  private final Set<String> pendingUserNames = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean running;
+
+  private volatile Thread writer;
+
+  public UserWriteBehindServiceImpl(IUserService userService,
+      UserRegistrationProperties properties, RegistrationMetrics registrationMetrics) {
+    UserRegistrationProperties.WriteBehind settings = properties.getWriteBehind();
+    this.userService = userService;
+    this.registrationMetrics = registrationMetrics;
+    this.enabled = settings.isEnabled();
+    this.queueCapacity = settings.getQueueCapacity();
+    this.maxBatchSize = settings.getMaxBatchSize();
+    this.maxLatencyNanos = settings.getMaxLatency().toNanos();
+    this.tickets = Caffeine.newBuilder()
+        .maximumSize(settings.getCompletedTickets())
+        .expireAfterWrite(settings.getTicketTtl())
+        .build();
+    registrationMetrics.monitorQueue(size);
+  }
+
+  /**
+   * this method allows the registration of a user without waiting for it to be saved.
+   * When write-behind is disabled, the user is saved before returning, and the outcome is only
+   * given by the returned ticket.
+   * @param user - should be valid
+   * @return the ticket of the registration, pending until the user is saved, or without
+   *     identifier and created when write-behind is disabled
+   * @throws UserNameTakenException if the username is registered or already queued
+   * @throws RegistrationQueueFullException if too many users are waiting to be saved
+   * @throws Exception if error in saving user, when write-behind is disabled
+   */
+  @Override
+  public RegistrationTicketDTO submit(User user) throws Exception {
+    if (!enabled) {
+      RegistrationTicketDTO ticket = new RegistrationTicketDTO(null, user.getUserName());
+      ticket.created(userService.createUser(user).getId());
+      return ticket;
+    }
+    RegistrationTicketDTO ticket =
+        new RegistrationTicketDTO(UUID.randomUUID().toString(), user.getUserName());
+    String userName = User.normalizeUserName(user.getUserName());
+    if (!pendingUserNames.add(userName)) {
+      throw new UserNameTakenException(user.getUserName());
+    }
+    if (!userService.isUserNameAvailable(user.getUserName())) {
+      pendingUserNames.remove(userName);
+      throw new UserNameTakenException(user.getUserName());
+    }
+    int queued = reserve();
+    if (queued < 0) {
+      pendingUserNames.remove(userName);
+      registrationMetrics.registrationRejected();
+      throw new RegistrationQueueFullException(RETRY_AFTER_SECONDS);
+    }
+    pendingTickets.put(ticket.getTicket(), ticket);
+    queue.offer(new Pending(user, userName, ticket));
+    if (queued == 0 || (queued + 1) % maxBatchSize == 0) {
+      LockSupport.unpark(writer);
+    }
+    return ticket;
+  }
+
+  /**
+   * Takes a place in the queue, without locking.
+   * @return the number of users queued before, -1 if the queue is full
+   */
+  private int reserve() {
+    int queued;
+    do {
+      queued = size.get();
+      if (queued >= queueCapacity) {
+        return -1;
+      }
+    } while (!size.compareAndSet(queued, queued + 1));
+    return queued;
+  }
+
+  /**
+   * this method return the progress of an asynchronous registration.
+   * @param ticket - ticket returned by {@link #submit(User)}
+   * @return the progress, empty if the ticket is unknown or expired
+   */
+  @Override
+  public Optional<RegistrationTicketDTO> getTicket(String ticket) {
+    // pending first: a completed ticket is cached before it stops being pending
+    RegistrationTicketDTO pending = pendingTickets.get(ticket);
+    return Optional.ofNullable(pending != null ? pending : tickets.getIfPresent(ticket));
+  }
+
+  /**
+   * Saves the queued users until the service is stopped and the queue is empty.
+   */
+  private void drain() {
+    List<Pending> batch = new ArrayList<>(maxBatchSize);
+    while (running || size.get() > 0) {
+      Pending first = queue.poll();
+      if (first == null) {
+        LockSupport.parkNanos(this, IDLE_NANOS);
+        continue;
+      }
+      batch.add(first);
+      long deadline = first.queuedAt + maxLatencyNanos;
+      while (batch.size() < maxBatchSize) {
+        Pending next = queue.poll();
+        if (next != null) {
+          batch.add(next);
+          continue;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0 || !running) {
+          break;
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+      try {
+        write(batch);
+      } catch (RuntimeException e) {
+        LOGGER.error("Unexpected failure of the registration writer", e);
+        batch.forEach(pending -> pending.ticket.failed(e.getMessage()));
+      } finally {
+        batch.forEach(this::complete);
+        size.addAndGet(-batch.size());
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Moves the ticket of a saved or failed user to the completed ones, its ticket-ttl starting
+   * now, and frees its username.
+   */
+  private void complete(Pending pending) {
+    String ticket = pending.ticket.getTicket();
+    tickets.put(ticket, pending.ticket);
+    pendingTickets.remove(ticket);
+    pendingUserNames.remove(pending.userName);
+  }
+
+  /**
+   * Saves a batch in one transaction. When the batch is rejected (a username registered in the
+   * meantime for instance) its users are saved one by one so that each one gets its own outcome.
+   */
+  private void write(List<Pending> batch) {
+    List<User> users = new ArrayList<>(batch.size());
+    batch.forEach(pending -> users.add(pending.user));
+    try {
+      List<User> created = userService.createUsers(users);
+      registrationMetrics.batchSaved(created.size());
+      for (int i = 0; i < created.size(); i++) {
+        batch.get(i).ticket.created(created.get(i).getId());
+      }
+    } catch (RuntimeException batchError) {
+      for (Pending pending : batch) {
+        pending.user.setId(null);
+        try {
+          pending.ticket.created(userService.createUser(pending.user).getId());
+        } catch (Exception e) {
+          pending.ticket.failed(e.getMessage());
+        }
+      }
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    if (enabled) {
+      writer = new Thread(this::drain, "registration-writer");
+      writer.start();
+    }
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    Thread current = writer;
+    if (current != null) {
+      LockSupport.unpark(current);
+      try {
+        current.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Starts before and stops after the web server, so that every accepted user is saved.
+   */
+  @Override
+  public int getPhase() {
+    return SmartLifecycle.DEFAULT_PHASE - 2;
+  }
+
+  private static final class Pending {
+
+    private final User user;
+
+    private final String userName;
+
+    private final RegistrationTicketDTO ticket;
+
+    private final long queuedAt = System.nanoTime();
+
+    private Pending(User user, String userName, RegistrationTicketDTO ticket) {
+      this.user = user;
+      this.userName = userName;
+      this.ticket = ticket;
+    }
+  }
+}
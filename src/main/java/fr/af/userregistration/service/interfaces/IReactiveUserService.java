@@ -0,0 +1,14 @@
+package fr.af.userregistration.service.interfaces;
+
+import fr.af.userregistration.entity.User;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link IUserService}, used by the "reactive" profile.
+ */
+public interface IReactiveUserService {
+  public Mono<User> createUser(User user);
+
+  public Mono<User> getUserByUserName(String userName);
+
+}
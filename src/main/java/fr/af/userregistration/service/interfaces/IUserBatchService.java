@@ -0,0 +1,11 @@
+package fr.af.userregistration.service.interfaces;
+
+import fr.af.userregistration.dto.BatchReportDTO;
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface IUserBatchService {
+
+  public BatchReportDTO importUsers(InputStream users) throws IOException;
+
+}
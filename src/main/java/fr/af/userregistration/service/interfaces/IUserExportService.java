@@ -0,0 +1,14 @@
+package fr.af.userregistration.service.interfaces;
+
+import fr.af.userregistration.enumeration.ExportFormat;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface IUserExportService {
+
+  public long getWatermark();
+
+  public void exportUsers(long since, long upTo, ExportFormat format, OutputStream out)
+      throws IOException;
+
+}
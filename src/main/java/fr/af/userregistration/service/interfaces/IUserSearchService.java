@@ -0,0 +1,11 @@
+package fr.af.userregistration.service.interfaces;
+
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.dto.UserSearchDTO;
+import java.util.List;
+
+public interface IUserSearchService {
+  public UserSearchDTO searchUsers(String query, int page, int size);
+
+  public List<UserDTO> findUsersByPhoneNumber(String phoneNumber);
+}
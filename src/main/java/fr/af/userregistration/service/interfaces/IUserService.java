@@ -2,10 +2,18 @@ package fr.af.userregistration.service.interfaces;
 
 import fr.af.userregistration.entity.User;
 import fr.af.userregistration.exception.ResourceNotFoundException;
+import java.util.List;
+import java.util.Optional;
 
 public interface IUserService {
   public User createUser(User user) throws Exception;
 
+  public List<User> createUsers(List<User> users);
+
+  public Optional<User> findUserByUserName(String userName);
+
   public User getUserByUserName(String userName) throws ResourceNotFoundException;
 
+  public boolean isUserNameAvailable(String userName);
+
 }
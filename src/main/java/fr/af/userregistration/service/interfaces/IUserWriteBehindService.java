@@ -0,0 +1,11 @@
+package fr.af.userregistration.service.interfaces;
+
+import fr.af.userregistration.dto.RegistrationTicketDTO;
+import fr.af.userregistration.entity.User;
+import java.util.Optional;
+
+public interface IUserWriteBehindService {
+  public RegistrationTicketDTO submit(User user) throws Exception;
+
+  public Optional<RegistrationTicketDTO> getTicket(String ticket);
+}
@@ -1,23 +1,14 @@
 package fr.af.userregistration.util;
 
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.PropertyMap;
-import org.modelmapper.convention.MatchingStrategies;
 
 public class ObjectMapper {
-  private static ModelMapper modelMapper = new ModelMapper();
 
-  /**
-   * Model mapper property setting are specified in the following block. Default
-   * property matching strategy is set to Strict see {@link MatchingStrategies}
-   * Custom mappings are added using {@link ModelMapper#addMappings(PropertyMap)}
-   */
-  static {
-    modelMapper = new ModelMapper();
-  }
+  private static final String NO_MAPPING = "No mapping from %s to %s";
 
   /**
    * Hide from public usage.
@@ -27,7 +18,8 @@ public class ObjectMapper {
 
   /**
    * <p>
-   * Note: outClass object must have default constructor with no arguments
+   * Note: only the pairs handled by {@link UserMapper} are supported, they are dispatched
+   * on the class identity so no reflection is involved.
    * </p>
    *
    * @param          <D> type of result object.
@@ -35,17 +27,25 @@ public class ObjectMapper {
    * @param entity   entity that needs to be mapped.
    * @param outClass class of result object.
    * @return new object of outClass type.
+   * @throws IllegalArgumentException if there is no mapping between the two types
    */
   public static <D, T> D map(final T entity, Class<D> outClass) {
     if(entity == null){
       return null;
     }
-    return modelMapper.map(entity, outClass);
+    if (outClass == UserDTO.class && entity instanceof User) {
+      return outClass.cast(UserMapper.toDTO((User) entity));
+    }
+    if (outClass == User.class && entity instanceof UserDTO) {
+      return outClass.cast(UserMapper.toEntity((UserDTO) entity));
+    }
+    throw new IllegalArgumentException(
+        String.format(NO_MAPPING, entity.getClass().getName(), outClass.getName()));
   }
 
   /**
    * <p>
-   * Note: outClass object must have default constructor with no arguments
+   * Note: see {@link #map(Object, Class)} for the supported types
    * </p>
    *
    * @param entityList list of entities that needs to be mapped
@@ -55,7 +55,11 @@ public class ObjectMapper {
    * @return list of mapped object with result type.
    */
   public static <D, T> List<D> mapAll(final Collection<T> entityList, Class<D> outCLass) {
-    return entityList.stream().map(entity -> map(entity, outCLass)).collect(Collectors.toList());
+    List<D> result = new ArrayList<>(entityList.size());
+    for (T entity : entityList) {
+      result.add(map(entity, outCLass));
+    }
+    return result;
   }
 
   /**
@@ -63,9 +67,17 @@ public class ObjectMapper {
    *
    * @param source      object to map from
    * @param destination object to map to
+   * @throws IllegalArgumentException if there is no mapping between the two types
    */
   public static <S, D> D map(final S source, D destination) {
-    modelMapper.map(source, destination);
+    if (source instanceof User && destination instanceof UserDTO) {
+      UserMapper.copy((User) source, (UserDTO) destination);
+    } else if (source instanceof UserDTO && destination instanceof User) {
+      UserMapper.copy((UserDTO) source, (User) destination);
+    } else {
+      throw new IllegalArgumentException(String.format(NO_MAPPING,
+          source == null ? null : source.getClass().getName(), destination.getClass().getName()));
+    }
     return destination;
   }
 }
@@ -0,0 +1,82 @@
+package fr.af.userregistration.util;
+
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+
+/**
+ * Hand written conversions between {@link User} and {@link UserDTO}.
+ * Plain getter/setter copies: no reflection, no type map, only the target object is allocated.
+ * Any field added to User or UserDTO must be added here too.
+ */
+public final class UserMapper {
+
+  /**
+   * Hide from public usage.
+   */
+  private UserMapper() {
+  }
+
+  /**
+   * Copies a user into a new DTO.
+   *
+   * @param user user to copy, may be null
+   * @return new DTO, null if user is null
+   */
+  public static UserDTO toDTO(User user) {
+    if (user == null) {
+      return null;
+    }
+    return copy(user, new UserDTO());
+  }
+
+  /**
+   * Copies a DTO into a new, not persisted, user.
+   *
+   * @param user DTO to copy, may be null
+   * @return new user, null if the DTO is null
+   */
+  public static User toEntity(UserDTO user) {
+    if (user == null) {
+      return null;
+    }
+    return copy(user, new User());
+  }
+
+  /**
+   * Copies every field of a user into an existing DTO.
+   *
+   * @param source      user to copy
+   * @param destination DTO to fill
+   * @return destination
+   */
+  public static UserDTO copy(User source, UserDTO destination) {
+    destination.setId(source.getId());
+    destination.setUserName(source.getUserName());
+    destination.setFirstName(source.getFirstName());
+    destination.setLastName(source.getLastName());
+    destination.setResidenceCountry(source.getResidenceCountry());
+    destination.setBirthDate(source.getBirthDate());
+    destination.setPhoneNumber(source.getPhoneNumber());
+    destination.setGender(source.getGender());
+    return destination;
+  }
+
+  /**
+   * Copies every field of a DTO into an existing user.
+   *
+   * @param source      DTO to copy
+   * @param destination user to fill
+   * @return destination
+   */
+  public static User copy(UserDTO source, User destination) {
+    destination.setId(source.getId());
+    destination.setUserName(source.getUserName());
+    destination.setFirstName(source.getFirstName());
+    destination.setLastName(source.getLastName());
+    destination.setResidenceCountry(source.getResidenceCountry());
+    destination.setBirthDate(source.getBirthDate());
+    destination.setPhoneNumber(source.getPhoneNumber());
+    destination.setGender(source.getGender());
+    return destination;
+  }
+}
@@ -8,13 +8,22 @@ import java.lang.annotation.Target;
 import javax.validation.Constraint;
 import javax.validation.Payload;
 
-
+/**
+ * The annotated birth date must belong to someone who is at least {@link #min()} years old.
+ */
 @Documented
 @Constraint(validatedBy = AgeValidator.class)
 @Target( { ElementType.METHOD, ElementType.FIELD })
 @Retention(RetentionPolicy.RUNTIME)
 public @interface AgeConstraint {
+  int ADULT = 18;
+
   String message();
   Class<?>[] groups() default {};
   Class<? extends Payload>[] payload() default {};
+
+  /**
+   * @return minimum age, in years
+   */
+  int min() default ADULT;
 }
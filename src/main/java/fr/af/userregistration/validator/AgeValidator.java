@@ -1,7 +1,7 @@
 package fr.af.userregistration.validator;
 
+import java.time.Clock;
 import java.time.LocalDate;
-import java.time.Period;
 import java.time.ZoneId;
 import java.util.Date;
 import javax.validation.ConstraintValidator;
@@ -9,18 +9,71 @@ import javax.validation.ConstraintValidatorContext;
 
 public class AgeValidator implements ConstraintValidator<AgeConstraint, Date> {
 
+  private final Clock clock;
+
+  private int minimumAge = AgeConstraint.ADULT;
+
+  /**
+   * Cutoff of the current day, recomputed on the first validation after midnight.
+   */
+  private volatile Cutoff cutoff;
+
+  public AgeValidator() {
+    this(Clock.systemDefaultZone());
+  }
+
+  /**
+   * @param clock - gives the current day and the time zone of birth dates
+   */
+  public AgeValidator(Clock clock) {
+    this.clock = clock;
+  }
+
   @Override
   public void initialize(AgeConstraint constraintAnnotation) {
-    ConstraintValidator.super.initialize(constraintAnnotation);
+    minimumAge = constraintAnnotation.min();
+    cutoff = null;
   }
 
+  /**
+   * A birth date is valid when the user is at least minimumAge years old today,
+   * i.e. when it is before the start of the day following today minus minimumAge years.
+   */
   @Override
   public boolean isValid(Date birthDateField, ConstraintValidatorContext constraintValidatorContext) {
     if(birthDateField != null) {
-      LocalDate birthDate = birthDateField.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-      LocalDate today = LocalDate.now();
-      return Period.between(birthDate, today).getYears() >= 18;
+      long now = clock.millis();
+      Cutoff current = cutoff;
+      if (current == null || now >= current.validUntil) {
+        current = cutoff = new Cutoff(clock, minimumAge);
+      }
+      return birthDateField.getTime() < current.bornBefore;
     }
     return false;
   }
+
+  private static final class Cutoff {
+
+    /**
+     * Epoch millis of the start of the day after the latest allowed birth date.
+     */
+    private final long bornBefore;
+
+    /**
+     * Epoch millis of the next midnight.
+     */
+    private final long validUntil;
+
+    private Cutoff(Clock clock, int minimumAge) {
+      ZoneId zone = clock.getZone();
+      LocalDate today = LocalDate.now(clock);
+      LocalDate latestBirthDate = today.minusYears(minimumAge);
+      this.bornBefore = startOfDay(latestBirthDate.plusDays(1), zone);
+      this.validUntil = startOfDay(today.plusDays(1), zone);
+    }
+
+    private static long startOfDay(LocalDate date, ZoneId zone) {
+      return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+  }
 }
@@ -0,0 +1,78 @@
+package fr.af.userregistration.validator;
+
+import java.util.Locale;
+
+/**
+ * ISO 3166-1 alpha-2 country codes as a 26x26 bitset.
+ * A code is turned into its index, (first letter * 26 + second letter), without allocation
+ * and ignoring the case; a set of codes is a long[] with the bit of each code set.
+ */
+final class CountryCodes {
+
+  private static final int LETTERS = 26;
+
+  private static final long[] ISO_COUNTRIES = bitSet(Locale.getISOCountries());
+
+  /**
+   * Hide from public usage.
+   */
+  private CountryCodes() {
+  }
+
+  /**
+   * Gets the index of a two letters code.
+   * @param code - country code, in any case
+   * @return index in [0, 676[, -1 if code is not made of two ASCII letters
+   */
+  static int index(CharSequence code) {
+    if (code == null || code.length() != 2) {
+      return -1;
+    }
+    int first = letter(code.charAt(0));
+    int second = letter(code.charAt(1));
+    if (first < 0 || second < 0) {
+      return -1;
+    }
+    return first * LETTERS + second;
+  }
+
+  private static int letter(char c) {
+    int letter = (c | 0x20) - 'a';
+    return letter >= 0 && letter < LETTERS ? letter : -1;
+  }
+
+  /**
+   * Builds the set of the given ISO countries.
+   * @param codes - country codes, codes that are not ISO countries are ignored
+   * @return bitset of the countries
+   */
+  static long[] isoCountries(String... codes) {
+    long[] countries = bitSet(codes);
+    for (int i = 0; i < countries.length; i++) {
+      countries[i] &= ISO_COUNTRIES[i];
+    }
+    return countries;
+  }
+
+  private static long[] bitSet(String... codes) {
+    long[] bits = new long[(LETTERS * LETTERS + 63) / 64];
+    for (String code : codes) {
+      int index = index(code);
+      if (index >= 0) {
+        bits[index >>> 6] |= 1L << index;
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * Tells if a code belongs to a set.
+   * @param countries - bitset built by {@link #isoCountries(String...)}
+   * @param code - country code, in any case
+   * @return true if code is in the set
+   */
+  static boolean contains(long[] countries, CharSequence code) {
+    int index = index(code);
+    return index >= 0 && (countries[index >>> 6] & (1L << index)) != 0;
+  }
+}
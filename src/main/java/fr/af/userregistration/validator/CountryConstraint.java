@@ -8,12 +8,23 @@ import java.lang.annotation.Target;
 import javax.validation.Constraint;
 import javax.validation.Payload;
 
+/**
+ * The annotated element must be the ISO 3166-1 alpha-2 code, in any case, of one of the
+ * allowed countries of residence.
+ */
 @Documented
 @Constraint(validatedBy = CountryValidator.class)
 @Target( { ElementType.METHOD, ElementType.FIELD })
 @Retention(RetentionPolicy.RUNTIME)
 public @interface CountryConstraint {
+    String FRANCE = "FR";
+
     String message();
     Class<?>[] groups() default {};
     Class<? extends Payload>[] payload() default {};
+
+    /**
+     * @return ISO 3166-1 alpha-2 codes of the markets where users may reside
+     */
+    String[] allowed() default {FRANCE};
 }
@@ -1,21 +1,23 @@
 package fr.af.userregistration.validator;
 
-import java.util.Arrays;
-import java.util.Locale;
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
 
 public class CountryValidator implements ConstraintValidator<CountryConstraint, String> {
 
+  /**
+   * Allowed ISO countries, computed once from {@link CountryConstraint#allowed()}.
+   */
+  private long[] allowedCountries = CountryCodes.isoCountries(CountryConstraint.FRANCE);
+
   @Override
   public void initialize(CountryConstraint countryConstraint) {
-    ConstraintValidator.super.initialize(countryConstraint);
+    allowedCountries = CountryCodes.isoCountries(countryConstraint.allowed());
   }
 
   @Override
   public boolean isValid(String countryField,
       ConstraintValidatorContext cxt) {
-    return countryField != null && Arrays.asList(Locale.getISOCountries()).contains(countryField.toUpperCase())
-        && "FR".equals(countryField.toUpperCase());
+    return CountryCodes.contains(allowedCountries, countryField);
   }
 }
@@ -0,0 +1,28 @@
+package fr.af.userregistration.validator;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import javax.validation.Constraint;
+import javax.validation.Payload;
+
+/**
+ * The annotated element must be a phone number in one of the allowed national formats.
+ * null is valid, the phone number being optional.
+ */
+@Documented
+@Constraint(validatedBy = PhoneValidator.class)
+@Target( { ElementType.METHOD, ElementType.FIELD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PhoneConstraint {
+    String message();
+    Class<?>[] groups() default {};
+    Class<? extends Payload>[] payload() default {};
+
+    /**
+     * @return national formats of the markets where users may reside
+     */
+    PhoneFormat[] formats() default {PhoneFormat.FR};
+}
@@ -0,0 +1,85 @@
+package fr.af.userregistration.validator;
+
+/**
+ * National phone number formats, checked by {@link PhoneValidator}.
+ * A format reads the number one char at a time, without allocation, and gives its international
+ * form: the country calling code followed by the national significant number, as E.164 digits.
+ * Another country is supported by adding its format.
+ */
+public enum PhoneFormat {
+
+  /**
+   * French number: 0, a digit from 1 to 9 then 8 digits, ex: 0612345678 for +33 6 12 34 56 78.
+   */
+  FR {
+    @Override
+    public long normalize(CharSequence phone) {
+      if (phone.length() != 10 || phone.charAt(0) != '0' || phone.charAt(1) == '0') {
+        return INVALID;
+      }
+      long number = digits(phone, 1, 10);
+      return number == INVALID ? INVALID : 33_000_000_000L + number;
+    }
+  };
+
+  /**
+   * Normalized form of a number which does not match the format.
+   */
+  public static final long INVALID = -1;
+
+  private static final PhoneFormat[] FORMATS = values();
+
+  /**
+   * Gets the international form of a number written in this format.
+   * @param phone - national phone number
+   * @return E.164 digits of the number, {@link #INVALID} if it does not match the format
+   */
+  public abstract long normalize(CharSequence phone);
+
+  /**
+   * Tells whether a number is written in this format.
+   * @param phone - national phone number
+   * @return true if it matches the format
+   */
+  public boolean matches(CharSequence phone) {
+    return normalize(phone) != INVALID;
+  }
+
+  /**
+   * Gets the international form of a number written in any format, the first matching one in
+   * declaration order.
+   * @param phone - national phone number, may be null
+   * @return E.164 digits of the number, {@link #INVALID} if it matches no format
+   */
+  public static long normalizeAny(CharSequence phone) {
+    if (phone == null) {
+      return INVALID;
+    }
+    for (PhoneFormat format : FORMATS) {
+      long number = format.normalize(phone);
+      if (number != INVALID) {
+        return number;
+      }
+    }
+    return INVALID;
+  }
+
+  /**
+   * Reads a run of decimal digits.
+   * @param phone - phone number
+   * @param from - position of the first digit
+   * @param to - position following the last digit, at most 18 digits after from
+   * @return value of the digits, {@link #INVALID} if one of the chars is not an ASCII digit
+   */
+  static long digits(CharSequence phone, int from, int to) {
+    long number = 0;
+    for (int i = from; i < to; i++) {
+      int digit = phone.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return INVALID;
+      }
+      number = number * 10 + digit;
+    }
+    return number;
+  }
+}
@@ -0,0 +1,32 @@
+package fr.af.userregistration.validator;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+/**
+ * Checks phone numbers by hand, char by char, instead of matching a regular expression:
+ * no {@link java.util.regex.Matcher} is allocated per validation.
+ */
+public class PhoneValidator implements ConstraintValidator<PhoneConstraint, String> {
+
+  private PhoneFormat[] formats = {PhoneFormat.FR};
+
+  @Override
+  public void initialize(PhoneConstraint phoneConstraint) {
+    formats = phoneConstraint.formats();
+  }
+
+  @Override
+  public boolean isValid(String phoneField,
+      ConstraintValidatorContext cxt) {
+    if (phoneField == null) {
+      return true;
+    }
+    for (PhoneFormat format : formats) {
+      if (format.matches(phoneField)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,78 @@
+package fr.af.userregistration.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class UserNameFilterTest {
+
+  private static final int USERS = 10_000;
+
+  @Mock
+  private UserRepository userRepository;
+
+  private UserRegistrationProperties properties;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.openMocks(this);
+    properties = new UserRegistrationProperties();
+    properties.getAvailability().setExpectedUsers(USERS);
+    Mockito.when(userRepository.findUsersAfter(Mockito.anyLong(), Mockito.anyLong(),
+        Mockito.any())).thenReturn(Collections.emptyList());
+  }
+
+  @Test
+  public void mightBeTaken() {
+    UserNameFilter filter = new UserNameFilter(userRepository, properties);
+    for (int i = 0; i < USERS; i++) {
+      filter.add("User" + i, (long) i);
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < USERS; i++) {
+      assertTrue(filter.mightBeTaken("USER" + i));
+      if (filter.mightBeTaken("free" + i)) {
+        falsePositives++;
+      }
+    }
+    // 1% expected
+    assertTrue(falsePositives < USERS * 2 / 100);
+  }
+
+  @Test
+  public void snapshot() throws Exception {
+    Path snapshot = Files.createTempDirectory("filter").resolve("usernames.bin");
+    properties.getAvailability().setSnapshot(snapshot.toString());
+    UserNameFilter filter = new UserNameFilter(userRepository, properties);
+    filter.add("saved", 7L);
+    filter.destroy();
+
+    // only the users registered after the snapshot are read
+    Mockito.when(userRepository.findMaxId()).thenReturn(Optional.of(8L));
+    User registered = new User(8L, "registered", null, null, "FR", null, null, null);
+    Mockito.when(userRepository.findUsersAfter(Mockito.eq(7L), Mockito.anyLong(), Mockito.any()))
+        .thenReturn(Collections.singletonList(registered));
+    UserNameFilter restored = new UserNameFilter(userRepository, properties);
+    restored.afterSingletonsInstantiated();
+    assertTrue(restored.mightBeTaken("SAVED"));
+    assertTrue(restored.mightBeTaken("registered"));
+
+    // a snapshot ahead of the database is ignored
+    Mockito.when(userRepository.findMaxId()).thenReturn(Optional.of(0L));
+    UserNameFilter reset = new UserNameFilter(userRepository, properties);
+    reset.afterSingletonsInstantiated();
+    assertFalse(reset.mightBeTaken("saved"));
+  }
+}
@@ -0,0 +1,159 @@
+package fr.af.userregistration.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import fr.af.userregistration.repository.UserRepository;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+
+public class UserRecordStoreTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  @Captor
+  private ArgumentCaptor<List<User>> batches;
+
+  private UserRegistrationProperties properties;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.openMocks(this);
+    properties = new UserRegistrationProperties();
+    properties.getRecordStore().setEnabled(true);
+    properties.getRecordStore().setInitialCapacity(16);
+    properties.getRecordStore().setChunkSize(DataSize.ofKilobytes(4));
+    Mockito.when(userRepository.findUsersAfter(Mockito.anyLong(), Mockito.anyLong(),
+        Mockito.any())).thenReturn(Collections.emptyList());
+  }
+
+  @Test
+  public void get() {
+    UserRecordStore store = new UserRecordStore(userRepository, null, properties);
+    User user = new User(7L, "Hélène", "Hélène", null, "FR",
+        java.sql.Date.valueOf(LocalDate.of(1990, 5, 17)), "0612345678", Gender.F);
+    store.put(user);
+    User found = store.get("HÉLÈNE").orElseThrow();
+    assertEquals(7L, (long) found.getId());
+    assertEquals("Hélène", found.getUserName());
+    assertEquals("Hélène", found.getFirstName());
+    assertNull(found.getLastName());
+    assertEquals("FR", found.getResidenceCountry());
+    assertEquals(user.getBirthDate(), found.getBirthDate());
+    assertEquals("0612345678", found.getPhoneNumber());
+    assertEquals(Gender.F, found.getGender());
+    assertFalse(store.get("helen").isPresent());
+
+    // values which can't be packed are kept as text
+    store.put(new User(8L, "other", null, null, "FRA", null, "+33612345678", null));
+    User other = store.get("other").orElseThrow();
+    assertEquals("FRA", other.getResidenceCountry());
+    assertEquals("+33612345678", other.getPhoneNumber());
+    assertNull(other.getBirthDate());
+    assertNull(other.getGender());
+  }
+
+  @Test
+  public void put_Grows() throws Exception {
+    properties.getRecordStore().setFile(
+        Files.createTempDirectory("store").resolve("users.bin").toString());
+    UserRecordStore store = new UserRecordStore(userRepository, null, properties);
+    for (long id = 1; id <= 1000; id++) {
+      store.put(new User(id, "User" + id, "Jeanne", "Martin", "FR", null, null, null));
+    }
+    store.put(new User(1001L, "USER1", null, null, "FR", null, null, null));
+    assertEquals(1000, store.size());
+    assertTrue(store.usedBytes() > DataSize.ofKilobytes(4).toBytes());
+    for (long id = 2; id <= 1000; id++) {
+      assertEquals(id, (long) store.get("user" + id).orElseThrow().getId());
+    }
+    assertEquals(1001L, (long) store.get("user1").orElseThrow().getId());
+    store.destroy();
+  }
+
+  @Test
+  public void snapshot_DatabaseUsersNotLogged() throws Exception {
+    Path directory = Files.createTempDirectory("snapshot");
+    properties.getRecordStore().setSnapshotDirectory(directory.toString());
+    Mockito.when(userRepository.findUsersAfter(Mockito.eq(0L), Mockito.anyLong(), Mockito.any()))
+        .thenReturn(List.of(new User(1L, "User1", null, null, "FR", null, null, null),
+            new User(2L, "User2", null, null, "FR", null, null, null)));
+    UserRecordStore store = new UserRecordStore(userRepository, null, properties);
+    store.afterSingletonsInstantiated();
+    for (long generation : UserRecordSnapshot.logGenerations(directory)) {
+      assertEquals(0, Files.size(UserRecordSnapshot.log(directory, generation)));
+    }
+    store.destroy();
+
+    // saved by the snapshot instead
+    Mockito.when(userRepository.findUsersAfter(Mockito.eq(0L), Mockito.anyLong(), Mockito.any()))
+        .thenReturn(Collections.emptyList());
+    Mockito.when(userRepository.findMaxId()).thenReturn(Optional.of(2L));
+    UserRecordStore restored = new UserRecordStore(userRepository, null, properties);
+    restored.afterSingletonsInstantiated();
+    assertEquals(2, restored.size());
+    restored.destroy();
+  }
+
+  @Test
+  public void snapshot() throws Exception {
+    Path directory = Files.createTempDirectory("snapshot");
+    properties.getRecordStore().setSnapshotDirectory(directory.toString());
+    UserRecordStore store = new UserRecordStore(userRepository, null, properties);
+    store.afterSingletonsInstantiated();
+    for (long id = 1; id <= 300; id++) {
+      store.put(new User(id, "User" + id, "Jeanne", "Martin", "FR", null, null, null));
+    }
+    store.snapshot();
+    // logged only, the last one torn by a crash
+    store.put(new User(301L, "logged", null, null, "FR", null, "0612345678", null));
+    store.put(new User(302L, "torn", null, null, "FR", null, null, null));
+    Path log = UserRecordSnapshot.log(directory, 1);
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+
+    // the database lost every user
+    Mockito.when(userRepository.findMaxId()).thenReturn(Optional.empty());
+    UserRecordStore restored = new UserRecordStore(userRepository, null, properties);
+    restored.afterSingletonsInstantiated();
+    assertEquals(301, restored.size());
+    assertEquals(150L, (long) restored.get("USER150").orElseThrow().getId());
+    assertEquals("0612345678", restored.get("logged").orElseThrow().getPhoneNumber());
+    assertFalse(restored.contains("torn"));
+    Mockito.verify(userRepository).restartIdsAfter(301L);
+    Mockito.verify(userRepository, Mockito.timeout(5000).atLeastOnce())
+        .insertUsers(batches.capture());
+
+    // registrations after the restore are logged, then saved by the shutdown snapshot
+    restored.put(new User(400L, "after", null, null, "FR", null, null, null));
+    restored.destroy();
+    UserRecordStore again = new UserRecordStore(userRepository, null, properties);
+    again.afterSingletonsInstantiated();
+    assertEquals(302, again.size());
+    assertTrue(again.contains("after"));
+    again.destroy();
+    assertEquals(1, UserRecordSnapshot.logGenerations(directory).size());
+    store.destroy();
+  }
+}
@@ -0,0 +1,105 @@
+package fr.af.userregistration.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.repository.UserRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class UserSearchIndexTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  private UserRegistrationProperties properties;
+
+  private UserSearchIndex index;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.openMocks(this);
+    properties = new UserRegistrationProperties();
+    index = new UserSearchIndex(userRepository, properties);
+    index.load(List.of(
+        user(1L, "jmartin", "Jeanne", "Martin"),
+        user(2L, "Hélène_D", "Hélène", "Dupont"),
+        user(3L, "martine", "Martine", "Durand"),
+        user(4L, "pmartinez", "Paul", "Martinez")));
+  }
+
+  private static User user(Long id, String userName, String firstName, String lastName) {
+    return new User(id, userName, firstName, lastName, "FR", null, null, null);
+  }
+
+  @Test
+  public void search() {
+    // exact term first, then longer terms, each user once
+    assertEquals(List.of(1L, 3L, 4L), index.search("MARTIN", 0, 10));
+    assertEquals(List.of(2L), index.search("helene", 0, 10));
+    assertEquals(List.of(2L), index.search("  Hélène   dup ", 0, 10));
+    assertEquals(List.of(2L), index.search("helene_d", 0, 10));
+    assertEquals(List.of(), index.search("martinezz", 0, 10));
+    assertEquals(List.of(), index.search(" ", 0, 10));
+  }
+
+  @Test
+  public void search_Pages() {
+    assertEquals(List.of(1L, 3L), index.search("mar", 0, 2));
+    assertEquals(List.of(4L), index.search("mar", 2, 2));
+    assertEquals(List.of(), index.search("mar", 3, 2));
+  }
+
+  @Test
+  public void add() throws Exception {
+    index.add(user(5L, "martin", "Léa", "Martin"));
+    assertEquals(List.of(1L, 5L, 3L, 4L), index.search("martin", 0, 10));
+    assertEquals(List.of(5L), index.search("lea", 0, 10));
+
+    // postings merged into the base by the background thread stay searchable
+    properties.getSearch().setMergeThreshold(10);
+    UserSearchIndex merged = new UserSearchIndex(userRepository, properties);
+    List<User> users = new ArrayList<>();
+    for (long id = 1; id <= 100; id++) {
+      users.add(user(id, "user" + id, "Jean", "Martin"));
+    }
+    merged.load(users.subList(0, 50));
+    users.subList(50, 100).forEach(merged::add);
+    TimeUnit.MILLISECONDS.sleep(200);
+    List<Long> found = merged.search("jean mar", 0, 200);
+    assertEquals(100, found.size());
+    assertEquals(1L, (long) found.get(0));
+    assertTrue(merged.search("user100", 0, 10).contains(100L));
+  }
+
+  @Test
+  public void add_Reload() throws Exception {
+    // a reload of the users during a merge, e.g. after they were copied to the database,
+    // is not overwritten by the segment merged with the previous base
+    properties.getSearch().setMergeThreshold(10);
+    UserSearchIndex reloaded = new UserSearchIndex(userRepository, properties);
+    List<User> users = new ArrayList<>();
+    for (long id = 1; id <= 150; id++) {
+      users.add(user(id, "user" + id, "Jean", "Martin"));
+    }
+    reloaded.load(users.subList(0, 50));
+    Thread adds = new Thread(() -> users.subList(50, 100).forEach(reloaded::add));
+    adds.start();
+    for (int i = 0; i < 20; i++) {
+      reloaded.load(users.subList(50, 150));
+    }
+    adds.join();
+    TimeUnit.MILLISECONDS.sleep(200);
+    List<Long> found = reloaded.search("jean mar", 0, 200);
+    assertEquals(100, found.size());
+    assertEquals(51L, (long) found.get(0));
+    assertTrue(reloaded.search("user1", 0, 200).stream().allMatch(id -> id > 50));
+  }
+}
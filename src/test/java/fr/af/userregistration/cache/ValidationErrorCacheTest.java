@@ -0,0 +1,40 @@
+package fr.af.userregistration.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+
+public class ValidationErrorCacheTest {
+
+  private final ValidationErrorCache cache = new ValidationErrorCache(new ObjectMapper());
+
+  private static ObjectError error(String field, String message) {
+    return new FieldError("userDTO", field, message);
+  }
+
+  private static String text(byte[] body) {
+    return new String(body, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void body_Cached() {
+    byte[] body = cache.body(List.of(error("phoneNumber", "Invalid \"phone\"")));
+    assertEquals("{\"phoneNumber\":\"Invalid \\\"phone\\\"\"}", text(body));
+    assertSame(body, cache.body(List.of(error("phoneNumber", "Invalid \"phone\""))));
+  }
+
+  @Test
+  public void body_Joined() {
+    byte[] body = cache.body(List.of(error("userName", "mandatory"),
+        error("residenceCountry", "FR only"), error("userName", "too long"),
+        new ObjectError("userDTO", "not valid")));
+    assertEquals("{\"userName\":\"too long\",\"residenceCountry\":\"FR only\","
+        + "\"userDTO\":\"not valid\"}", text(body));
+  }
+}
@@ -0,0 +1,94 @@
+package fr.af.userregistration.controller;
+
+import static org.junit.Assert.assertFalse;
+
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.enumeration.Gender;
+import fr.af.userregistration.service.interfaces.IUserService;
+import java.util.Calendar;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+    properties = "spring.datasource.url=jdbc:h2:mem:reactive-controller-test")
+@ActiveProfiles("reactive")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ReactiveUserControllerTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @Autowired
+  private IUserService userService;
+
+  private UserDTO user(String userName, String country, int age) {
+    UserDTO user = new UserDTO();
+    user.setUserName(userName);
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - age);
+    user.setBirthDate(c.getTime());
+    user.setGender(Gender.F);
+    user.setResidenceCountry(country);
+    return user;
+  }
+
+  @Test
+  public void createUser_ThenGetByUserName_OK() {
+    webTestClient.post().uri("/user")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(user("ReactiveUser", "FR", 19))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(String.class).isEqualTo("User created with success");
+    webTestClient.get().uri("/user/byUsername/REACTIVEUSER")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.userName").isEqualTo("ReactiveUser")
+        .jsonPath("$.id").isNumber()
+        .jsonPath("$.gender").isEqualTo("F");
+  }
+
+  @Test
+  public void createUser_Duplicate_Conflict() {
+    webTestClient.post().uri("/user")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(user("ReactiveTwin", "FR", 19))
+        .exchange()
+        .expectStatus().isOk();
+    assertFalse(userService.isUserNameAvailable("reactivetwin"));
+    webTestClient.post().uri("/user")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(user("REACTIVETWIN", "FR", 19))
+        .exchange()
+        .expectStatus().isEqualTo(409)
+        .expectBody(String.class).isEqualTo("User name is already taken");
+  }
+
+  @Test
+  public void createUser_Invalid() {
+    webTestClient.post().uri("/user")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(user("minor", "GB", 17))
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("$.residenceCountry").exists()
+        .jsonPath("$.birthDate").exists();
+  }
+
+  @Test
+  public void getUserByUserName_NotFound() {
+    webTestClient.get().uri("/user/byUsername/unknown")
+        .exchange()
+        .expectStatus().isNotFound()
+        .expectBody(String.class).isEqualTo("User with user name unknown not found");
+  }
+}
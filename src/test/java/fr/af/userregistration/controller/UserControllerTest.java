@@ -1,16 +1,38 @@
 package fr.af.userregistration.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.af.userregistration.cache.IdempotencyStore;
+import fr.af.userregistration.cache.ValidationErrorCache;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.constants.ValidationMessages;
+import fr.af.userregistration.dto.BatchReportDTO;
+import fr.af.userregistration.dto.RegistrationTicketDTO;
 import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.dto.UserSearchDTO;
 import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.ExportFormat;
 import fr.af.userregistration.enumeration.Gender;
-import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.exception.RegistrationQueueFullException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.repository.IdempotencyKeyRepository;
+import fr.af.userregistration.service.interfaces.IUserBatchService;
+import fr.af.userregistration.service.interfaces.IUserExportService;
+import fr.af.userregistration.service.interfaces.IUserSearchService;
 import fr.af.userregistration.service.interfaces.IUserService;
+import fr.af.userregistration.service.interfaces.IUserWriteBehindService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,6 +48,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -40,14 +63,38 @@ public class UserControllerTest {
   @Mock
   private IUserService userService;
 
+  @Mock
+  private IUserBatchService userBatchService;
+
+  @Mock
+  private IUserExportService userExportService;
+
+  @Mock
+  private IdempotencyKeyRepository idempotencyKeyRepository;
+
+  @Mock
+  private IUserWriteBehindService userWriteBehindService;
+
+  @Mock
+  private IUserSearchService userSearchService;
+
   private MockMvc mockMvc;
 
   private ObjectMapper objectMapper = new ObjectMapper();
 
+  private SimpleMeterRegistry meterRegistry;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
   @Before
   public void setUp() {
     MockitoAnnotations.openMocks(this);
-    userController = new UserController(userService);
+    meterRegistry = new SimpleMeterRegistry();
+    userController = new UserController(userService, userBatchService, userExportService,
+        new IdempotencyStore(idempotencyKeyRepository, new UserRegistrationProperties()),
+        userWriteBehindService, userSearchService, new ValidationErrorCache(objectMapper),
+        new RegistrationMetrics(meterRegistry));
     mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
   }
 
@@ -111,6 +158,12 @@ public class UserControllerTest {
         .andReturn();
     status = mvcResult.getResponse().getStatus();
     assertEquals(400, status);
+    assertEquals("{\"birthDate\":\"" + ValidationMessages.ADULT_CONSTRAINT + "\"}",
+        mvcResult.getResponse().getContentAsString());
+    assertEquals(1.0, meterRegistry.get("user.validation.failures")
+        .tag("field", "residenceCountry").counter().count(), 0.0);
+    assertEquals(3.0, meterRegistry.get("user.validation.rejected.requests").counter().count(),
+        0.0);
   }
 
   @Test
@@ -133,6 +186,144 @@ public class UserControllerTest {
     assertEquals(500, status);
   }
 
+  @Test
+  public void createUser_IdempotencyKey() throws Exception {
+    Mockito.when(userService.createUser(any())).thenReturn(new User());
+    UserDTO user = new UserDTO();
+    user.setUserName("USER");
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setResidenceCountry("FR");
+    MvcResult first = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user")
+            .header("Idempotency-Key", "key-1")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    MvcResult retry = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user")
+            .header("Idempotency-Key", "key-1")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(200, retry.getResponse().getStatus());
+    assertEquals(first.getResponse().getContentAsString(), retry.getResponse().getContentAsString());
+    assertEquals("true", retry.getResponse().getHeader("Idempotent-Replayed"));
+    Mockito.verify(userService, Mockito.times(1)).createUser(any());
+
+    // same key, same user written in another case
+    user.setUserName("user");
+    MvcResult sameUser = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user")
+            .header("Idempotency-Key", "key-1")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(200, sameUser.getResponse().getStatus());
+    assertEquals("true", sameUser.getResponse().getHeader("Idempotent-Replayed"));
+
+    // same key and username, other phone number
+    user.setPhoneNumber("0612345678");
+    MvcResult otherPhone = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user")
+            .header("Idempotency-Key", "key-1")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(422, otherPhone.getResponse().getStatus());
+
+    // same key, other user
+    user.setUserName("OTHER");
+    MvcResult reused = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user")
+            .header("Idempotency-Key", "key-1")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(422, reused.getResponse().getStatus());
+  }
+
+  @Test
+  public void createUser_UserNameTaken() throws Exception {
+    Mockito.when(userService.createUser(any())).thenThrow(new UserNameTakenException("USER"));
+    UserDTO user = new UserDTO();
+    user.setUserName("USER");
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setResidenceCountry("FR");
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(409, mvcResult.getResponse().getStatus());
+    assertEquals("User name USER is already taken", mvcResult.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void createUserAsync_Accepted() throws Exception {
+    Mockito.when(userWriteBehindService.submit(any()))
+        .thenReturn(new RegistrationTicketDTO("ticket-1", "USER"));
+    UserDTO user = new UserDTO();
+    user.setUserName("USER");
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setResidenceCountry("FR");
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user/async")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(202, mvcResult.getResponse().getStatus());
+    assertEquals("/user/async/ticket-1", mvcResult.getResponse().getHeader("Location"));
+    assertEquals("PENDING", objectMapper.readTree(mvcResult.getResponse().getContentAsString())
+        .get("status").asText());
+  }
+
+  @Test
+  public void createUserAsync_SavedRightAway() throws Exception {
+    RegistrationTicketDTO ticket = new RegistrationTicketDTO(null, "USER");
+    ticket.created(7L);
+    Mockito.when(userWriteBehindService.submit(any())).thenReturn(ticket);
+    UserDTO user = new UserDTO();
+    user.setUserName("USER");
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setResidenceCountry("FR");
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user/async")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(200, mvcResult.getResponse().getStatus());
+    assertNull(mvcResult.getResponse().getHeader("Location"));
+    assertEquals(7, objectMapper.readTree(mvcResult.getResponse().getContentAsString())
+        .get("id").asInt());
+  }
+
+  @Test
+  public void createUserAsync_QueueFull() throws Exception {
+    Mockito.when(userWriteBehindService.submit(any()))
+        .thenThrow(new RegistrationQueueFullException(1));
+    UserDTO user = new UserDTO();
+    user.setUserName("USER");
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setResidenceCountry("FR");
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user/async")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(user)))
+        .andReturn();
+    assertEquals(503, mvcResult.getResponse().getStatus());
+    assertEquals("1", mvcResult.getResponse().getHeader("Retry-After"));
+  }
+
   @Test
   public void getUserByUserName_Ok() throws Exception {
     User user = new User();
@@ -142,7 +333,7 @@ public class UserControllerTest {
     user.setBirthDate(c.getTime());
     user.setGender(Gender.F);
     user.setResidenceCountry("FR");
-    Mockito.when(userService.getUserByUserName(any())).thenReturn(user);
+    Mockito.when(userService.findUserByUserName(any())).thenReturn(Optional.of(user));
     MvcResult mvcResult = mockMvc
         .perform(MockMvcRequestBuilders.get("/user/byUsername/USER"))
         .andReturn();
@@ -159,12 +350,78 @@ public class UserControllerTest {
     user.setBirthDate(c.getTime());
     user.setGender(Gender.F);
     user.setResidenceCountry("FR");
-    Mockito.when(userService.getUserByUserName(any())).thenThrow(new ResourceNotFoundException("Resource not found"));
+    Mockito.when(userService.findUserByUserName(any())).thenReturn(Optional.empty());
     MvcResult mvcResult = mockMvc
         .perform(MockMvcRequestBuilders.get("/user/byUsername/USER"))
         .andReturn();
     int status = mvcResult.getResponse().getStatus();
     assertEquals(404, status);
+    assertEquals("User with user name USER not found", mvcResult.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void createUsers_OK() throws Exception {
+    BatchReportDTO report = new BatchReportDTO();
+    report.addItem(new BatchReportDTO.Item(0, "USER", 1L, BatchReportDTO.Status.CREATED, null));
+    Mockito.when(userBatchService.importUsers(any())).thenReturn(report);
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.post("/user/batch")
+            .contentType("application/x-ndjson")
+            .content("{\"userName\":\"USER\"}\n"))
+        .andReturn();
+    int status = mvcResult.getResponse().getStatus();
+    assertEquals(200, status);
+    assertEquals(report.getCreated(),
+        objectMapper.readTree(mvcResult.getResponse().getContentAsString()).get("created").asInt());
+  }
+
+  @Test
+  public void exportUsers_Csv() throws Exception {
+    Mockito.when(userExportService.getWatermark()).thenReturn(42L);
+    Mockito.doAnswer(invocation -> {
+      invocation.getArgument(3, OutputStream.class)
+          .write("id\n".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(userExportService).exportUsers(eq(10L), eq(42L), eq(ExportFormat.CSV), any());
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.get("/user/export?since=10").accept("text/csv"))
+        .andReturn();
+    mvcResult = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult)).andReturn();
+    assertEquals(200, mvcResult.getResponse().getStatus());
+    assertEquals("42", mvcResult.getResponse().getHeader("X-Export-Watermark"));
+    assertEquals("id\n", mvcResult.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void exportUsers_Timeout() throws Exception {
+    // the timeout of exports only applies to them, within the application context
+    MvcResult mvcResult = MockMvcBuilders.webAppContextSetup(webApplicationContext).build()
+        .perform(MockMvcRequestBuilders.get("/user/export"))
+        .andReturn();
+    assertEquals(30 * 60 * 1000L, mvcResult.getRequest().getAsyncContext().getTimeout());
+  }
+
+  @Test
+  public void searchUsers_Ok() throws Exception {
+    Mockito.when(userSearchService.searchUsers("mart", 1, 0))
+        .thenReturn(new UserSearchDTO("mart", 1, 20, false, List.of(new UserDTO())));
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.get("/user/search?q=mart&page=1"))
+        .andReturn();
+    assertEquals(200, mvcResult.getResponse().getStatus());
+    assertEquals(1,
+        objectMapper.readTree(mvcResult.getResponse().getContentAsString()).get("users").size());
+  }
+
+  @Test
+  public void findUsersByPhoneNumber_Ok() throws Exception {
+    Mockito.when(userSearchService.findUsersByPhoneNumber("0612345678"))
+        .thenReturn(List.of(new UserDTO(), new UserDTO()));
+    MvcResult mvcResult = mockMvc
+        .perform(MockMvcRequestBuilders.get("/user/byPhone/0612345678"))
+        .andReturn();
+    assertEquals(200, mvcResult.getResponse().getStatus());
+    assertEquals(2, objectMapper.readTree(mvcResult.getResponse().getContentAsString()).size());
   }
 
 }
@@ -0,0 +1,155 @@
+package fr.af.userregistration.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.UserNameTakenException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.unit.DataSize;
+
+public class UserJournalTest {
+
+  private Path directory;
+
+  private UserRegistrationProperties.Persistence settings;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("journal");
+    settings = new UserRegistrationProperties().getPersistence();
+    settings.setJournalDirectory(directory.toString());
+  }
+
+  private static User user(String userName) {
+    return new User(null, userName, "Jeanne", "Martin", "FR", null, "0612345678", null);
+  }
+
+  @Test
+  public void append() throws Exception {
+    AtomicInteger written = new AtomicInteger();
+    try (UserJournal journal = new UserJournal(settings, written::addAndGet)) {
+      User user = user("Hélène");
+      journal.append(Collections.singletonList(user));
+      assertEquals(1L, (long) user.getId());
+      User found = journal.get("HÉLÈNE").orElseThrow();
+      assertEquals(1L, (long) found.getId());
+      assertEquals("Hélène", found.getUserName());
+      assertEquals("0612345678", found.getPhoneNumber());
+
+      // a batch is appended as a whole or not at all
+      assertThrows(UserNameTakenException.class,
+          () -> journal.append(Arrays.asList(user("first"), user("hélène"))));
+      assertFalse(journal.contains("first"));
+      journal.append(Arrays.asList(user("first"), user("second")));
+      assertEquals(3L, (long) journal.get("second").orElseThrow().getId());
+      assertEquals(3, journal.size());
+      assertEquals(3, written.get());
+    }
+  }
+
+  @Test
+  public void append_WriterFailure() throws Exception {
+    AtomicInteger written = new AtomicInteger();
+    try (UserJournal journal = new UserJournal(settings, records -> {
+      // a listener failure is not one of the journal
+      if (written.getAndAdd(records) == 0) {
+        throw new IllegalStateException("listener");
+      }
+      throw new OutOfMemoryError("writer");
+    })) {
+      journal.append(Collections.singletonList(user("first")));
+      assertEquals(1, written.get());
+      // the writer survives an error, but refuses every write from then on; the group it
+      // failed on was written already
+      assertThrows(UncheckedIOException.class,
+          () -> journal.append(Collections.singletonList(user("second"))));
+      assertTrue(journal.contains("second"));
+      assertThrows(UncheckedIOException.class,
+          () -> journal.append(Collections.singletonList(user("third"))));
+      assertFalse(journal.contains("third"));
+    }
+  }
+
+  @Test
+  public void append_Concurrent() throws Exception {
+    AtomicInteger written = new AtomicInteger();
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    try (UserJournal journal = new UserJournal(settings, written::addAndGet)) {
+      List<Future<?>> appends = new ArrayList<>();
+      for (int i = 0; i < 800; i++) {
+        User user = user("user" + i);
+        appends.add(threads.submit(() -> journal.append(Collections.singletonList(user))));
+      }
+      for (Future<?> append : appends) {
+        append.get();
+      }
+      assertEquals(800, journal.size());
+      assertEquals(800, written.get());
+    } finally {
+      threads.shutdown();
+    }
+  }
+
+  @Test
+  public void recover() throws Exception {
+    try (UserJournal journal = new UserJournal(settings, size -> { })) {
+      journal.append(Arrays.asList(user("first"), user("second")));
+    }
+    // a crash in the middle of an entry
+    Path segment = directory.resolve("users-1.journal");
+    long size = Files.size(segment);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.allocate(12).putInt(40).putInt(7).putInt(1).flip());
+    }
+
+    try (UserJournal journal = new UserJournal(settings, written -> { })) {
+      assertEquals(size, Files.size(segment));
+      assertEquals(2, journal.size());
+      assertEquals(2L, (long) journal.get("SECOND").orElseThrow().getId());
+      journal.append(Collections.singletonList(user("third")));
+    }
+    try (UserJournal journal = new UserJournal(settings, written -> { })) {
+      assertEquals(3L, (long) journal.get("third").orElseThrow().getId());
+    }
+  }
+
+  @Test
+  public void compact() throws Exception {
+    settings.setSegmentSize(DataSize.ofBytes(500));
+    settings.setCompactionSegments(3);
+    try (UserJournal journal = new UserJournal(settings, written -> { })) {
+      for (int i = 0; i < 300; i++) {
+        journal.append(Collections.singletonList(user("user" + i)));
+      }
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      assertTrue(files.count() < 10);
+    }
+    try (UserJournal journal = new UserJournal(settings, written -> { })) {
+      assertEquals(300, journal.size());
+      for (int i = 0; i < 300; i++) {
+        assertEquals(i + 1L, (long) journal.get("USER" + i).orElseThrow().getId());
+      }
+    }
+  }
+}
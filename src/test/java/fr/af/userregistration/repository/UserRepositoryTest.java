@@ -0,0 +1,119 @@
+package fr.af.userregistration.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import javax.validation.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@SpringBootTest
+@RunWith(SpringJUnit4ClassRunner.class)
+public class UserRepositoryTest {
+
+  @Autowired
+  private UserRepository userRepository;
+
+  private User user;
+
+  @Before
+  public void setUp() {
+    user = new User();
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setGender(Gender.F);
+    user.setResidenceCountry("FR");
+  }
+
+  @Test
+  public void save_Validated() {
+    // constraints are not checked again for users built from a validated DTO
+    user.setUserName("VALIDATED");
+    user.setPhoneNumber("not checked");
+    user.markValidated();
+    assertNotNull(userRepository.saveAndFlush(user).getId());
+  }
+
+  @Test
+  public void save_NotValidated() {
+    user.setUserName("NOT_VALIDATED");
+    user.setPhoneNumber("checked");
+    try {
+      userRepository.saveAndFlush(user);
+      assert false;
+    } catch (Exception e) {
+      Throwable cause = e;
+      while (cause != null && !(cause instanceof ConstraintViolationException)) {
+        cause = cause.getCause();
+      }
+      assertTrue(cause instanceof ConstraintViolationException);
+    }
+  }
+
+  @Test
+  public void findUserByUserNameKey_IgnoreCase() {
+    user.setUserName("Mixed.Case");
+    userRepository.saveAndFlush(user);
+    User result = userRepository.findUserByUserNameKey(User.normalizeUserName("MIXED.case")).get();
+    assertEquals("Mixed.Case", result.getUserName());
+    assertFalse(userRepository.findUserByUserNameKey("unknown").isPresent());
+  }
+
+  @Test
+  public void findUsersByPhoneKey() {
+    user.setUserName("Phone.Owner");
+    user.setPhoneNumber("0612345678");
+    userRepository.saveAndFlush(user);
+    List<User> result = userRepository.findUsersByPhoneKey(
+        User.normalizePhoneNumber("0612345678"), PageRequest.of(0, 10));
+    assertEquals(1, result.size());
+    assertEquals("Phone.Owner", result.get(0).getUserName());
+    assertEquals(33612345678L, (long) result.get(0).getPhoneKey());
+    assertTrue(userRepository.findUsersByPhoneKey(33612345679L, PageRequest.of(0, 10))
+        .isEmpty());
+  }
+
+  @Test
+  public void findUsersRegisteredAfter() {
+    user.setUserName("Registered");
+    Long id = userRepository.saveAndFlush(user).getId();
+    Date now = userRepository.findDatabaseTime();
+    User registered = userRepository.findUsersRegisteredAfter(new Date(0), Long.MAX_VALUE, now,
+        PageRequest.of(0, 1000)).stream()
+        .filter(found -> found.getId().equals(id))
+        .findFirst().get();
+    assertNotNull(registered.getRegisteredAt());
+    assertFalse(registered.getRegisteredAt().after(now));
+    // the next page starts after it, and an export ending before it doesn't read it
+    assertTrue(userRepository.findUsersRegisteredAfter(registered.getRegisteredAt(), id, now,
+        PageRequest.of(0, 1000)).stream().noneMatch(found -> found.getId().equals(id)));
+    assertTrue(userRepository.findUsersRegisteredAfter(new Date(0), Long.MAX_VALUE,
+        new Date(registered.getRegisteredAt().getTime() - 1), PageRequest.of(0, 1000)).stream()
+        .noneMatch(found -> found.getId().equals(id)));
+  }
+
+  @Test(expected = DataIntegrityViolationException.class)
+  public void save_DuplicateIgnoringCase() {
+    user.setUserName("Duplicate");
+    userRepository.saveAndFlush(user);
+    User duplicate = new User();
+    duplicate.setUserName("DUPLICATE");
+    duplicate.setBirthDate(user.getBirthDate());
+    duplicate.setResidenceCountry("FR");
+    userRepository.saveAndFlush(duplicate);
+  }
+}
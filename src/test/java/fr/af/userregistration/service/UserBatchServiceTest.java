@@ -0,0 +1,91 @@
+package fr.af.userregistration.service;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.dto.BatchReportDTO;
+import fr.af.userregistration.dto.BatchReportDTO.Status;
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.implementation.UserBatchServiceImpl;
+import fr.af.userregistration.service.interfaces.IUserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.List;
+import javax.validation.Validation;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class UserBatchServiceTest {
+
+  @Mock
+  private IUserService userService;
+
+  private UserBatchServiceImpl userBatchService;
+
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.openMocks(this);
+    UserRegistrationProperties properties = new UserRegistrationProperties();
+    properties.getBatch().setSize(2);
+    userBatchService = new UserBatchServiceImpl(userService,
+        Validation.buildDefaultValidatorFactory().getValidator(), objectMapper, properties,
+        new RegistrationMetrics(new SimpleMeterRegistry()));
+    Mockito.when(userService.createUsers(Mockito.any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  private String user(String userName, String country) throws Exception {
+    UserDTO user = new UserDTO();
+    user.setUserName(userName);
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    user.setBirthDate(c.getTime());
+    user.setResidenceCountry(country);
+    return objectMapper.writeValueAsString(user);
+  }
+
+  @Test
+  public void importUsers_Ndjson() throws Exception {
+    String body = user("USER1", "FR") + "\n" + user("USER2", "GB") + "\n"
+        + user("USER3", "FR") + "\n" + user("USER4", "FR") + "\n";
+    BatchReportDTO report = userBatchService.importUsers(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(4, report.getTotal());
+    assertEquals(3, report.getCreated());
+    Mockito.verify(userService, Mockito.times(2)).createUsers(Mockito.any());
+  }
+
+  @Test
+  public void importUsers_JsonArray() throws Exception {
+    String body = "[" + user("USER1", "FR") + "," + user("USER2", "FR") + "]";
+    BatchReportDTO report = userBatchService.importUsers(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(2, report.getCreated());
+  }
+
+  @Test
+  public void importUsers_BatchRejected() throws Exception {
+    Mockito.when(userService.createUsers(Mockito.any()))
+        .thenThrow(new IllegalStateException("duplicate"));
+    Mockito.when(userService.createUser(Mockito.any()))
+        .thenAnswer(invocation -> invocation.getArgument(0))
+        .thenThrow(new IllegalStateException("duplicate"));
+    String body = user("USER1", "FR") + "\n" + user("USER1", "FR") + "\n";
+    BatchReportDTO report = userBatchService.importUsers(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    List<BatchReportDTO.Item> items = report.getItems();
+    assertEquals(1, report.getCreated());
+    assertEquals(Status.CREATED, items.get(0).getStatus());
+    assertEquals(Status.FAILED, items.get(1).getStatus());
+  }
+}
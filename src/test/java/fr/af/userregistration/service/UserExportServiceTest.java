@@ -0,0 +1,86 @@
+package fr.af.userregistration.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.ExportFormat;
+import fr.af.userregistration.enumeration.Gender;
+import fr.af.userregistration.repository.UserRepository;
+import fr.af.userregistration.service.implementation.UserExportServiceImpl;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class UserExportServiceTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  private UserExportServiceImpl userExportService;
+
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.openMocks(this);
+    UserRegistrationProperties properties = new UserRegistrationProperties();
+    properties.getExport().setPageSize(2);
+    userExportService = new UserExportServiceImpl(userRepository, objectMapper, properties);
+    // keyset pages: each one starts after the last user of the previous one
+    Mockito.when(userRepository.findUsersRegisteredAfter(eq(new java.util.Date(0L)),
+        eq(Long.MAX_VALUE), eq(new java.util.Date(100L)), any()))
+        .thenReturn(Arrays.asList(user(1L, "USER1", null, 10L),
+            user(2L, "USER2", "Jean, \"Jo\"", 20L)));
+    Mockito.when(userRepository.findUsersRegisteredAfter(eq(new java.util.Date(20L)), eq(2L),
+        eq(new java.util.Date(100L)), any()))
+        .thenReturn(Collections.singletonList(user(3L, "USER3", null, 20L)));
+  }
+
+  private User user(Long id, String userName, String firstName, long registeredAt) {
+    return new User(id, userName, firstName, null, "FR", Date.valueOf("1990-05-01"), null,
+        Gender.F, new Timestamp(registeredAt));
+  }
+
+  @Test
+  public void getWatermark_LagsBehindDatabase() {
+    Mockito.when(userRepository.findDatabaseTime()).thenReturn(new Timestamp(600_000L));
+    assertEquals(540_000L, userExportService.getWatermark());
+  }
+
+  @Test
+  public void exportUsers_Ndjson() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    userExportService.exportUsers(0L, 100L, ExportFormat.NDJSON, out);
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(3, lines.length);
+    assertTrue(lines[1].startsWith("{\"id\":2,"));
+    assertEquals("USER3", objectMapper.readTree(lines[2]).get("userName").asText());
+    Mockito.verify(userRepository, Mockito.times(2)).findUsersRegisteredAfter(any(),
+        Mockito.anyLong(), any(), any());
+  }
+
+  @Test
+  public void exportUsers_Csv() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    userExportService.exportUsers(0L, 100L, ExportFormat.CSV, out);
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(4, lines.length);
+    assertEquals("id,userName,firstName,lastName,residenceCountry,birthDate,phoneNumber,gender",
+        lines[0]);
+    assertEquals("1,USER1,,,FR,1990-05-01,,F", lines[1]);
+    assertEquals("2,USER2,\"Jean, \"\"Jo\"\"\",,FR,1990-05-01,,F", lines[2]);
+  }
+}
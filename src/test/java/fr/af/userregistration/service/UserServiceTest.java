@@ -1,16 +1,29 @@
 package fr.af.userregistration.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import fr.af.userregistration.cache.UserCache;
+import fr.af.userregistration.cache.UserNameFilter;
+import fr.af.userregistration.cache.UserRecordStore;
+import fr.af.userregistration.cache.UserSearchIndex;
+import fr.af.userregistration.config.UserRegistrationProperties;
 import fr.af.userregistration.controller.UserController;
 import fr.af.userregistration.entity.User;
 import fr.af.userregistration.enumeration.Gender;
 import fr.af.userregistration.exception.ResourceNotFoundException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
 import fr.af.userregistration.repository.UserRepository;
 import fr.af.userregistration.service.implementation.UserServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,6 +40,8 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 public class UserServiceTest {
   @Mock
   private UserRepository userRepository;
+  @Mock
+  private EntityManager entityManager;
   @InjectMocks
   private UserServiceImpl userService;
 
@@ -42,7 +57,13 @@ public class UserServiceTest {
     user.setBirthDate(c.getTime());
     user.setGender(Gender.F);
     user.setResidenceCountry("FR");
-    userService = new UserServiceImpl(userRepository);
+    UserRegistrationProperties properties = new UserRegistrationProperties();
+    properties.getAvailability().setExpectedUsers(1000);
+    userService = new UserServiceImpl(userRepository, entityManager, new UserCache(properties),
+        new UserNameFilter(userRepository, properties),
+        new UserSearchIndex(userRepository, properties),
+        new UserRecordStore(userRepository, null, properties),
+        new RegistrationMetrics(new SimpleMeterRegistry()));
   }
 
   @Test
@@ -68,17 +89,86 @@ public class UserServiceTest {
     }
   }
 
+  @Test
+  public void createUser_UserNameTaken() throws Exception {
+    Mockito.when(userRepository.save(Mockito.any())).thenReturn(user);
+    userService.createUser(user);
+    Mockito.when(userRepository.findUserByUserNameKey("user")).thenReturn(Optional.of(user));
+    try {
+      userService.createUser(user);
+      assert false;
+    } catch (UserNameTakenException e) {
+      // detected before the insert
+      Mockito.verify(userRepository, Mockito.times(1)).save(Mockito.any());
+    }
+  }
+
+  @Test
+  public void createUsers_OK(){
+    Mockito.when(userRepository.saveAllAndFlush(Mockito.any())).thenReturn(Collections.singletonList(user));
+    List<User> result = userService.createUsers(Collections.singletonList(user));
+    assertEquals(1, result.size());
+    Mockito.verify(entityManager).clear();
+  }
+
   @Test
   public void getUserByUserName_OK(){
-    Mockito.when(userRepository.findUserByUserName(Mockito.any())).thenReturn(Optional.of(user));
+    Mockito.when(userRepository.findUserByUserNameKey(Mockito.any())).thenReturn(Optional.of(user));
     User result = userService.getUserByUserName("USER");
     assertEquals(user.getUserName(),result.getUserName());
   }
 
+  @Test
+  public void getUserByUserName_Cached() throws Exception {
+    Mockito.when(userRepository.findUserByUserNameKey(Mockito.any()))
+        .thenReturn(Optional.empty()).thenReturn(Optional.of(user));
+    Mockito.when(userRepository.save(Mockito.any())).thenReturn(user);
+    for (int i = 0; i < 2; i++) {
+      try {
+        userService.getUserByUserName("USER");
+        assert false;
+      } catch (ResourceNotFoundException e) {
+        assert true;
+      }
+    }
+    Mockito.verify(userRepository, Mockito.times(1)).findUserByUserNameKey("user");
+
+    // creating the user invalidates the cached miss
+    userService.createUser(user);
+    User result = userService.getUserByUserName("USER");
+    assertEquals(user.getUserName(), result.getUserName());
+    userService.getUserByUserName("USER");
+    Mockito.verify(userRepository, Mockito.times(2)).findUserByUserNameKey("user");
+  }
+
   @Test(expected = ResourceNotFoundException.class)
   public void getUserByUserName_NOT_FOUND(){
-    Mockito.when(userRepository.findUserByUserName(Mockito.any())).thenReturn(Optional.empty());
+    Mockito.when(userRepository.findUserByUserNameKey(Mockito.any())).thenReturn(Optional.empty());
     User result = userService.getUserByUserName("USER");
   }
 
+  @Test
+  public void findUserByUserName_NOT_FOUND(){
+    Mockito.when(userRepository.findUserByUserNameKey(Mockito.any())).thenReturn(Optional.empty());
+    assertFalse(userService.findUserByUserName("USER").isPresent());
+    try {
+      userService.getUserByUserName("USER");
+      assert false;
+    } catch (ResourceNotFoundException e) {
+      assertEquals("User with user name USER not found", e.getMessage());
+      assertEquals(0, e.getStackTrace().length);
+    }
+  }
+
+  @Test
+  public void isUserNameAvailable() throws Exception {
+    Mockito.when(userRepository.save(Mockito.any())).thenReturn(user);
+    Mockito.when(userRepository.findUserByUserNameKey("user")).thenReturn(Optional.of(user));
+    assertTrue(userService.isUserNameAvailable("USER"));
+    // unknown usernames are answered by the filter alone
+    Mockito.verify(userRepository, Mockito.never()).findUserByUserNameKey(Mockito.any());
+    userService.createUser(user);
+    assertFalse(userService.isUserNameAvailable("user"));
+  }
+
 }
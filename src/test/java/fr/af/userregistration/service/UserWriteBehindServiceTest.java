@@ -0,0 +1,135 @@
+package fr.af.userregistration.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import fr.af.userregistration.config.UserRegistrationProperties;
+import fr.af.userregistration.dto.RegistrationTicketDTO;
+import fr.af.userregistration.dto.RegistrationTicketDTO.Status;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.exception.RegistrationQueueFullException;
+import fr.af.userregistration.exception.UserNameTakenException;
+import fr.af.userregistration.metrics.RegistrationMetrics;
+import fr.af.userregistration.service.implementation.UserWriteBehindServiceImpl;
+import fr.af.userregistration.service.interfaces.IUserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class UserWriteBehindServiceTest {
+
+  @Mock
+  private IUserService userService;
+
+  private UserRegistrationProperties properties;
+
+  private UserWriteBehindServiceImpl userWriteBehindService;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.openMocks(this);
+    properties = new UserRegistrationProperties();
+    properties.getWriteBehind().setEnabled(true);
+    properties.getWriteBehind().setQueueCapacity(2);
+    properties.getWriteBehind().setMaxLatency(Duration.ofMillis(200));
+    userWriteBehindService = new UserWriteBehindServiceImpl(userService, properties,
+        new RegistrationMetrics(new SimpleMeterRegistry()));
+    AtomicLong ids = new AtomicLong();
+    Mockito.when(userService.isUserNameAvailable(Mockito.any())).thenReturn(true);
+    Mockito.when(userService.createUsers(Mockito.any())).thenAnswer(invocation -> {
+      List<User> users = invocation.getArgument(0);
+      users.forEach(user -> user.setId(ids.incrementAndGet()));
+      return users;
+    });
+  }
+
+  @After
+  public void tearDown() {
+    userWriteBehindService.stop();
+  }
+
+  private User user(String userName) {
+    User user = new User();
+    user.setUserName(userName);
+    return user;
+  }
+
+  @Test
+  public void submit_GroupCommit() throws Exception {
+    RegistrationTicketDTO first = userWriteBehindService.submit(user("USER1"));
+    RegistrationTicketDTO second = userWriteBehindService.submit(user("USER2"));
+    assertEquals(Status.PENDING, first.getStatus());
+    userWriteBehindService.start();
+    userWriteBehindService.stop();
+    assertEquals(Status.CREATED, first.getStatus());
+    assertEquals(Long.valueOf(2), second.getId());
+    assertEquals(second, userWriteBehindService.getTicket(second.getTicket()).get());
+    Mockito.verify(userService, Mockito.times(1)).createUsers(Mockito.any());
+  }
+
+  @Test
+  public void getTicket_PendingThenCompleted() throws Exception {
+    properties.getWriteBehind().setCompletedTickets(1);
+    userWriteBehindService = new UserWriteBehindServiceImpl(userService, properties,
+        new RegistrationMetrics(new SimpleMeterRegistry()));
+    RegistrationTicketDTO first = userWriteBehindService.submit(user("USER1"));
+    RegistrationTicketDTO second = userWriteBehindService.submit(user("USER2"));
+    // queued tickets are kept whatever the number of completed ones
+    assertEquals(first, userWriteBehindService.getTicket(first.getTicket()).get());
+    assertEquals(second, userWriteBehindService.getTicket(second.getTicket()).get());
+    userWriteBehindService.start();
+    userWriteBehindService.stop();
+    assertEquals(Status.CREATED,
+        userWriteBehindService.getTicket(second.getTicket()).get().getStatus());
+  }
+
+  @Test
+  public void submit_Disabled() throws Exception {
+    properties.getWriteBehind().setEnabled(false);
+    userWriteBehindService = new UserWriteBehindServiceImpl(userService, properties,
+        new RegistrationMetrics(new SimpleMeterRegistry()));
+    User user = user("USER1");
+    user.setId(7L);
+    Mockito.when(userService.createUser(user)).thenReturn(user);
+    RegistrationTicketDTO ticket = userWriteBehindService.submit(user);
+    assertEquals(Status.CREATED, ticket.getStatus());
+    assertEquals(Long.valueOf(7), ticket.getId());
+    assertNull(ticket.getTicket());
+  }
+
+  @Test(expected = RegistrationQueueFullException.class)
+  public void submit_QueueFull() throws Exception {
+    userWriteBehindService.submit(user("USER1"));
+    userWriteBehindService.submit(user("USER2"));
+    userWriteBehindService.submit(user("USER3"));
+  }
+
+  @Test(expected = UserNameTakenException.class)
+  public void submit_AlreadyQueued() throws Exception {
+    userWriteBehindService.submit(user("USER1"));
+    userWriteBehindService.submit(user("user1"));
+  }
+
+  @Test
+  public void submit_BatchRejected() throws Exception {
+    Mockito.doThrow(new IllegalStateException("duplicate"))
+        .when(userService).createUsers(Mockito.any());
+    Mockito.when(userService.createUser(Mockito.any()))
+        .thenAnswer(invocation -> invocation.getArgument(0))
+        .thenThrow(new UserNameTakenException("USER2"));
+    RegistrationTicketDTO first = userWriteBehindService.submit(user("USER1"));
+    RegistrationTicketDTO second = userWriteBehindService.submit(user("USER2"));
+    userWriteBehindService.start();
+    userWriteBehindService.stop();
+    assertEquals(Status.CREATED, first.getStatus());
+    assertEquals(Status.FAILED, second.getStatus());
+    assertEquals("User name USER2 is already taken", second.getError());
+  }
+}
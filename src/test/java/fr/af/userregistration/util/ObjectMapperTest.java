@@ -0,0 +1,62 @@
+package fr.af.userregistration.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import fr.af.userregistration.dto.UserDTO;
+import fr.af.userregistration.entity.User;
+import fr.af.userregistration.enumeration.Gender;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectMapperTest {
+
+  private UserDTO userDTO;
+
+  @Before
+  public void setUp() {
+    userDTO = new UserDTO();
+    userDTO.setId(1L);
+    userDTO.setUserName("USER");
+    userDTO.setFirstName("FIRST");
+    userDTO.setLastName("LAST");
+    Calendar c = Calendar.getInstance();
+    c.set(Calendar.YEAR, c.get(Calendar.YEAR) - 19);
+    userDTO.setBirthDate(c.getTime());
+    userDTO.setGender(Gender.F);
+    userDTO.setResidenceCountry("FR");
+    userDTO.setPhoneNumber("0612345678");
+  }
+
+  @Test
+  public void map_RoundTrip() {
+    User user = ObjectMapper.map(userDTO, User.class);
+    UserDTO result = ObjectMapper.map(user, UserDTO.class);
+    assertEquals(userDTO.toString(), result.toString());
+  }
+
+  @Test
+  public void map_Null() {
+    assertNull(ObjectMapper.map(null, UserDTO.class));
+  }
+
+  @Test
+  public void map_Destination() {
+    User user = ObjectMapper.map(userDTO, new User());
+    assertEquals(userDTO.getUserName(), user.getUserName());
+  }
+
+  @Test
+  public void mapAll_OK() {
+    List<User> users = ObjectMapper.mapAll(Arrays.asList(userDTO, userDTO), User.class);
+    assertEquals(2, users.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void map_Unsupported() {
+    ObjectMapper.map(userDTO, String.class);
+  }
+}
@@ -0,0 +1,100 @@
+package fr.af.userregistration.validator;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import org.junit.Test;
+
+public class AgeValidatorTest {
+
+  private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+  @AgeConstraint(message = "adult")
+  private Date adult;
+
+  @AgeConstraint(message = "senior", min = 65)
+  private Date senior;
+
+  private static class MovableClock extends Clock {
+
+    private Instant instant;
+
+    MovableClock(LocalDateTime now) {
+      moveTo(now);
+    }
+
+    void moveTo(LocalDateTime now) {
+      instant = now.atZone(PARIS).toInstant();
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return PARIS;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+  private AgeValidator validator(Clock clock, String field) throws Exception {
+    AgeValidator validator = new AgeValidator(clock);
+    validator.initialize(getClass().getDeclaredField(field).getAnnotation(AgeConstraint.class));
+    return validator;
+  }
+
+  private static Date birthDate(String date) {
+    return Date.from(LocalDate.parse(date).atTime(23, 30).atZone(PARIS).toInstant());
+  }
+
+  @Test
+  public void isValid_Birthday() throws Exception {
+    AgeValidator validator = validator(
+        Clock.fixed(LocalDate.parse("2026-10-17").atTime(0, 5).atZone(PARIS).toInstant(), PARIS),
+        "adult");
+    assertTrue(validator.isValid(birthDate("2008-10-17"), null));
+    assertFalse(validator.isValid(birthDate("2008-10-18"), null));
+    assertFalse(validator.isValid(null, null));
+  }
+
+  @Test
+  public void isValid_LeapDay() throws Exception {
+    // same as Period.between: born on February 29th, adult on March 1st of non-leap years
+    AgeValidator validator = validator(
+        Clock.fixed(LocalDate.parse("2026-02-28").atStartOfDay(ZoneOffset.UTC).toInstant(),
+            ZoneOffset.UTC), "adult");
+    assertFalse(validator.isValid(
+        Date.from(LocalDate.parse("2008-02-29").atStartOfDay(ZoneOffset.UTC).toInstant()), null));
+  }
+
+  @Test
+  public void isValid_Midnight() throws Exception {
+    MovableClock clock = new MovableClock(LocalDateTime.parse("2026-10-16T23:59:59"));
+    AgeValidator validator = validator(clock, "adult");
+    assertFalse(validator.isValid(birthDate("2008-10-17"), null));
+    clock.moveTo(LocalDateTime.parse("2026-10-17T00:00:00"));
+    assertTrue(validator.isValid(birthDate("2008-10-17"), null));
+  }
+
+  @Test
+  public void isValid_MinimumAge() throws Exception {
+    AgeValidator validator = validator(
+        Clock.fixed(LocalDate.parse("2026-10-17").atStartOfDay(PARIS).toInstant(), PARIS),
+        "senior");
+    assertTrue(validator.isValid(birthDate("1961-10-17"), null));
+    assertFalse(validator.isValid(birthDate("1961-10-18"), null));
+  }
+}
@@ -0,0 +1,56 @@
+package fr.af.userregistration.validator;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CountryValidatorTest {
+
+  private static class Resident {
+
+    @CountryConstraint(message = "FR only")
+    private String country;
+
+    @CountryConstraint(message = "FR or BE", allowed = {"FR", "be", "ZZ"})
+    private String market;
+
+    Resident(String country, String market) {
+      this.country = country;
+      this.market = market;
+    }
+  }
+
+  private Validator validator;
+
+  @Before
+  public void setUp() {
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+  }
+
+  private int violations(String country, String market) {
+    return validator.validate(new Resident(country, market)).size();
+  }
+
+  @Test
+  public void isValid_OK() {
+    assertEquals(0, violations("FR", "FR"));
+    assertEquals(0, violations("fr", "Be"));
+  }
+
+  @Test
+  public void isValid_NotAllowed() {
+    assertEquals(1, violations("GB", "FR"));
+    assertEquals(1, violations("FR", "GB"));
+  }
+
+  @Test
+  public void isValid_NotIsoCountry() {
+    // ZZ is allowed by the annotation but is not an ISO country
+    assertEquals(1, violations("FR", "ZZ"));
+    assertEquals(2, violations(null, "F"));
+    assertEquals(2, violations("FRA", "FÉ"));
+  }
+}
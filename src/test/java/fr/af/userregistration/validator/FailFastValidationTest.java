@@ -0,0 +1,28 @@
+package fr.af.userregistration.validator;
+
+import static org.junit.Assert.assertEquals;
+
+import fr.af.userregistration.dto.UserDTO;
+import javax.validation.Validator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@SpringBootTest(properties = "user-registration.validation.fail-fast=true")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class FailFastValidationTest {
+
+  @Autowired
+  private Validator validator;
+
+  @Test
+  public void validate_FirstViolationOnly() {
+    UserDTO user = new UserDTO();
+    user.setResidenceCountry("GB");
+    user.setPhoneNumber("123");
+    // no username, no birthdate, a foreign country and a non-valid phone number
+    assertEquals(1, validator.validate(user).size());
+  }
+}
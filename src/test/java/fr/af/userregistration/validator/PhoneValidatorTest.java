@@ -0,0 +1,60 @@
+package fr.af.userregistration.validator;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PhoneValidatorTest {
+
+  private static class Contact {
+
+    @PhoneConstraint(message = "FR only")
+    private String phone;
+
+    Contact(String phone) {
+      this.phone = phone;
+    }
+  }
+
+  private Validator validator;
+
+  @Before
+  public void setUp() {
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+  }
+
+  private int violations(String phone) {
+    return validator.validate(new Contact(phone)).size();
+  }
+
+  @Test
+  public void isValid_OK() {
+    assertEquals(0, violations("0612345678"));
+    assertEquals(0, violations("0199999999"));
+    // optional
+    assertEquals(0, violations(null));
+  }
+
+  @Test
+  public void isValid_NotFrench() {
+    assertEquals(1, violations("0012345678"));
+    assertEquals(1, violations("1612345678"));
+    assertEquals(1, violations("061234567"));
+    assertEquals(1, violations("06123456789"));
+    assertEquals(1, violations("06 12 34 56 78"));
+    assertEquals(1, violations("061234567a"));
+    assertEquals(1, violations("+33612345678"));
+    assertEquals(1, violations(""));
+  }
+
+  @Test
+  public void normalize() {
+    assertEquals(33612345678L, PhoneFormat.FR.normalize("0612345678"));
+    assertEquals(33612345678L, PhoneFormat.normalizeAny("0612345678"));
+    assertEquals(PhoneFormat.INVALID, PhoneFormat.normalizeAny("06123456/8"));
+    assertEquals(PhoneFormat.INVALID, PhoneFormat.normalizeAny(null));
+  }
+}